@@ -12,6 +12,8 @@ import utils.CmdLineParser;
 import utils.ImageMetaData;
 import utils.InvalidArgumentsException;
 import utils.LoadTester;
+import utils.OpenLoopLoadTester;
+import utils.Workload;
 
 /**
  * The part2.AlbumMainApp class is the entry point of the application for sending album requests.
@@ -39,7 +41,14 @@ public class AlbumMainApp {
     int threadGroupSize = params.get("threadGroupSize");
     int numThreadGroups = params.get("numThreadGroups");
     int delay = params.get("delay");
+    boolean virtualThreads = params.get("virtualThreads") != 0;
+    int rps = params.get("rps");
+    OpenLoopLoadTester openLoop = rps > 0
+        ? new OpenLoopLoadTester(rps, params.get("durationSeconds"), params.get("rampSeconds"))
+        : null;
+    Workload workload = cmdLineInfo.getWorkloadPath() != null ? Workload.load(cmdLineInfo.getWorkloadPath()) : null;
     String IPAddr = cmdLineInfo.getServerPath();
-    LoadTester.initialCalls(IPAddr,threadGroupSize, numThreadGroups, delay);
+    LoadTester.initialCalls(IPAddr,threadGroupSize, numThreadGroups, delay, virtualThreads, openLoop,
+        params.get("reportIntervalSeconds"), workload);
   }
 }
\ No newline at end of file
@@ -13,16 +13,28 @@ public class CmdLineInfo {
   private static final int DEFAULT_THREAD_GROUP_SIZE = 10;
   private static final int DEFAULT_NUM_THREAD_GROUPS = 100;
   private static final int DEFAULT_DELAY = 0;
+  private static final int DEFAULT_VIRTUAL_THREADS = 0;
+  private static final int DEFAULT_RPS = 0;
+  private static final int DEFAULT_DURATION_SECONDS = 60;
+  private static final int DEFAULT_RAMP_SECONDS = 0;
+  private static final int DEFAULT_REPORT_INTERVAL_SECONDS = 10;
   private static final String DEFAULT_IP_ADDR = "localhost";
   private static final int DEFAULT_SERVER_PORT = 8080;
   private static final String THREAD_GROUP_SIZE_KEY = "threadGroupSize";
   private static final String NUM_THREAD_GROUPS_KEY = "numThreadGroups";
   private static final String DELAY_KEY = "delay";
+  private static final String VIRTUAL_THREADS_KEY = "virtualThreads";
+  private static final String RPS_KEY = "rps";
+  private static final String DURATION_SECONDS_KEY = "durationSeconds";
+  private static final String RAMP_SECONDS_KEY = "rampSeconds";
+  private static final String REPORT_INTERVAL_SECONDS_KEY = "reportIntervalSeconds";
   private static final String IP_ADDR_KEY = "IPAddr";
+  private static final String WORKLOAD_KEY = "workload";
 
   private Map<String, Integer> commandLineInfo;
   private String serverPath;
   private String ipAddr;
+  private String workloadPath;
 
   /**
    * Initializes utils.CmdLineInfo with default values.
@@ -32,6 +44,11 @@ public class CmdLineInfo {
     this.commandLineInfo.put(THREAD_GROUP_SIZE_KEY, DEFAULT_THREAD_GROUP_SIZE);
     this.commandLineInfo.put(NUM_THREAD_GROUPS_KEY, DEFAULT_NUM_THREAD_GROUPS);
     this.commandLineInfo.put(DELAY_KEY, DEFAULT_DELAY);
+    this.commandLineInfo.put(VIRTUAL_THREADS_KEY, DEFAULT_VIRTUAL_THREADS);
+    this.commandLineInfo.put(RPS_KEY, DEFAULT_RPS);
+    this.commandLineInfo.put(DURATION_SECONDS_KEY, DEFAULT_DURATION_SECONDS);
+    this.commandLineInfo.put(RAMP_SECONDS_KEY, DEFAULT_RAMP_SECONDS);
+    this.commandLineInfo.put(REPORT_INTERVAL_SECONDS_KEY, DEFAULT_REPORT_INTERVAL_SECONDS);
     this.ipAddr = DEFAULT_IP_ADDR;
     this.serverPath = "http://" + this.ipAddr + ":" + DEFAULT_SERVER_PORT;
   }
@@ -63,6 +80,24 @@ public class CmdLineInfo {
     return ipAddr;
   }
 
+  /**
+   * Gets the path of the workload file.
+   *
+   * @return The workload file path, or null if none was given.
+   */
+  public String getWorkloadPath() {
+    return workloadPath;
+  }
+
+  /**
+   * Sets the path of the workload file.
+   *
+   * @param workloadPath The workload file path.
+   */
+  public void setWorkloadPath(String workloadPath) {
+    this.workloadPath = workloadPath;
+  }
+
   /**
    * Sets a specific command-line information.
    *
@@ -90,6 +125,7 @@ public class CmdLineInfo {
    * @return True if the command is valid; otherwise, false.
    */
   public boolean validateCmd(String cmdName) {
-    return this.commandLineInfo.keySet().contains(cmdName) || cmdName.equals(IP_ADDR_KEY);
+    return this.commandLineInfo.keySet().contains(cmdName) || cmdName.equals(IP_ADDR_KEY)
+        || cmdName.equals(WORKLOAD_KEY);
   }
 }
\ No newline at end of file
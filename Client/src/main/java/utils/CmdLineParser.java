@@ -28,7 +28,7 @@ public class CmdLineParser {
     int index = 0;
 
     if(args.length < 8) {
-      throw new InvalidArgumentsException("Arguments missing! accepts 4 arguments -threadGroupSize 10 -numThreadGroups 100 -delay 10 -IPAddr <server URI>.");
+      throw new InvalidArgumentsException("Arguments missing! accepts 4 arguments -threadGroupSize 10 -numThreadGroups 100 -delay 10 -IPAddr <server URI>, and optionally -virtualThreads 1 or -rps 500 -durationSeconds 60 -rampSeconds 10 for an open-loop run, -reportIntervalSeconds 10 and -workload <properties file>.");
     }
     while (index < args.length) {
       String currentArg = args[index];
@@ -59,6 +59,8 @@ public class CmdLineParser {
   private void handleFlag(String flag, String value) {
     if ("-IPAddr".equals(flag)) {
       cmdLineInfo.setServerPath(value);
+    } else if ("-workload".equals(flag)) {
+      cmdLineInfo.setWorkloadPath(value);
     } else {
       cmdLineInfo.setCmdLineInfo(flag.substring(1), value);
     }
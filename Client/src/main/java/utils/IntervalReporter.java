@@ -0,0 +1,108 @@
+package utils;
+
+import com.opencsv.CSVWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * utils.IntervalReporter prints the throughput and latency percentiles of every operation at a fixed interval while
+ * the load test runs, and appends them to a time-series CSV file. It makes warm-up, backlog build-up and pauses on the
+ * server visible, which a single report at the end of the run averages away.
+ *
+ * @author ambikakabra
+ */
+public class IntervalReporter implements AutoCloseable {
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private final LatencyRecorder latencyRecorder;
+  private final long intervalSeconds;
+  private final CSVWriter writer;
+  private final ScheduledExecutorService scheduler;
+  private final long startTime;
+  private long lastReportTime;
+
+  /**
+   * Constructs a utils.IntervalReporter and starts reporting.
+   *
+   * @param latencyRecorder The recorder the latencies are read from.
+   * @param intervalSeconds The reporting interval, in seconds.
+   * @param csvPath         The path of the time-series CSV file.
+   * @throws IOException If the CSV file cannot be created.
+   */
+  public IntervalReporter(LatencyRecorder latencyRecorder, int intervalSeconds, String csvPath) throws IOException {
+    this.latencyRecorder = latencyRecorder;
+    this.intervalSeconds = intervalSeconds;
+    this.writer = new CSVWriter(new FileWriter(csvPath));
+    this.writer.writeNext(new String[]{"Elapsed (s)", "Operation", "Requests", "Failures", "Throughput (req/s)",
+        "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)", "Max (ms)"});
+    this.startTime = System.currentTimeMillis();
+    this.lastReportTime = startTime;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "interval-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Prints and writes the statistics of the interval that ended now.
+   */
+  private synchronized void report() {
+    long now = System.currentTimeMillis();
+    double intervalLength = Math.max(1, now - lastReportTime) / 1000.0;
+    String elapsed = String.valueOf((now - startTime) / 1000);
+    lastReportTime = now;
+
+    StringBuilder line = new StringBuilder("[" + elapsed + "s]");
+    for (Operation operation : Operation.values()) {
+      Histogram histogram = latencyRecorder.getIntervalHistogram(operation);
+      long failures = latencyRecorder.getIntervalFailureCount(operation);
+      if (histogram.getTotalCount() == 0) {
+        continue;
+      }
+      double throughput = histogram.getTotalCount() / intervalLength;
+      line.append(String.format(" %s: %.1f req/s p50=%.2fms p99=%.2fms max=%.2fms;", operation.getName(), throughput,
+          toMillis(histogram.getValueAtPercentile(50)), toMillis(histogram.getValueAtPercentile(99)),
+          toMillis(histogram.getMaxValue())));
+      writer.writeNext(new String[]{elapsed, operation.getName(), String.valueOf(histogram.getTotalCount()),
+          String.valueOf(failures), String.valueOf(throughput),
+          String.valueOf(toMillis(histogram.getValueAtPercentile(50))),
+          String.valueOf(toMillis(histogram.getValueAtPercentile(90))),
+          String.valueOf(toMillis(histogram.getValueAtPercentile(99))),
+          String.valueOf(toMillis(histogram.getValueAtPercentile(99.9))),
+          String.valueOf(toMillis(histogram.getMaxValue()))});
+    }
+    System.out.println(line.indexOf(":") < 0 ? line + " no requests completed" : line);
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Stops reporting after writing the last, possibly partial, interval.
+   *
+   * @throws IOException If the CSV file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdownNow();
+    try {
+      scheduler.awaitTermination(intervalSeconds, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    report();
+    writer.close();
+  }
+
+  private static double toMillis(double nanos) {
+    return nanos / NANOS_PER_MILLI;
+  }
+}
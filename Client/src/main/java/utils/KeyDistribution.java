@@ -0,0 +1,138 @@
+package utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * utils.KeyDistribution chooses which album a request targets, as an index into the albums created during warm-up.
+ * Three popularity distributions are supported:
+ * <ul>
+ *   <li>uniform: every album is equally likely.</li>
+ *   <li>zipfian: the album of rank i is chosen with probability proportional to 1 / i^theta, as generated by
+ *   Gray et al., "Quickly Generating Billion-Record Synthetic Databases".</li>
+ *   <li>hotspot: a fixed fraction of accesses goes to a small set of hot albums, the rest is spread uniformly over
+ *   the other albums.</li>
+ * </ul>
+ *
+ * @author ambikakabra
+ */
+public class KeyDistribution {
+  private enum Kind { UNIFORM, ZIPFIAN, HOTSPOT }
+
+  private final Kind kind;
+  private final double zipfianTheta;
+  private final double hotSetFraction;
+  private final double hotAccessFraction;
+  private volatile ZipfianConstants zipfianConstants;
+
+  /** The constants of the zipfian generator for one number of keys. */
+  private static final class ZipfianConstants {
+    private final int size;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    private final double halfPowTheta;
+
+    private ZipfianConstants(int size, double theta) {
+      double zeta = 0;
+      for (int i = 1; i <= size; i++) {
+        zeta += 1 / Math.pow(i, theta);
+      }
+      double zeta2 = 1 + Math.pow(0.5, theta);
+      this.size = size;
+      this.zetaN = zeta;
+      this.alpha = 1 / (1 - theta);
+      this.eta = (1 - Math.pow(2.0 / size, 1 - theta)) / (1 - zeta2 / zeta);
+      this.halfPowTheta = Math.pow(0.5, theta);
+    }
+  }
+
+  private KeyDistribution(Kind kind, double zipfianTheta, double hotSetFraction, double hotAccessFraction) {
+    this.kind = kind;
+    this.zipfianTheta = zipfianTheta;
+    this.hotSetFraction = hotSetFraction;
+    this.hotAccessFraction = hotAccessFraction;
+  }
+
+  /**
+   * Creates a uniform distribution.
+   *
+   * @return The distribution.
+   */
+  public static KeyDistribution uniform() {
+    return new KeyDistribution(Kind.UNIFORM, 0, 0, 0);
+  }
+
+  /**
+   * Creates a zipfian distribution.
+   *
+   * @param theta The skew, between 0 (exclusive) and 1 (exclusive); 0.99 is the usual choice.
+   * @return The distribution.
+   */
+  public static KeyDistribution zipfian(double theta) {
+    if (theta <= 0 || theta >= 1) {
+      throw new IllegalArgumentException("Zipfian theta must be between 0 and 1: " + theta);
+    }
+    return new KeyDistribution(Kind.ZIPFIAN, theta, 0, 0);
+  }
+
+  /**
+   * Creates a hotspot distribution.
+   *
+   * @param hotSetFraction    The fraction of albums that are hot.
+   * @param hotAccessFraction The fraction of accesses that go to the hot albums.
+   * @return The distribution.
+   */
+  public static KeyDistribution hotspot(double hotSetFraction, double hotAccessFraction) {
+    if (hotSetFraction <= 0 || hotSetFraction > 1 || hotAccessFraction < 0 || hotAccessFraction > 1) {
+      throw new IllegalArgumentException("Hotspot fractions must be between 0 and 1: " + hotSetFraction + ", "
+          + hotAccessFraction);
+    }
+    return new KeyDistribution(Kind.HOTSPOT, 0, hotSetFraction, hotAccessFraction);
+  }
+
+  /**
+   * Chooses the index of the next album.
+   *
+   * @param size The number of albums; must be positive.
+   * @return An index between 0 (inclusive) and size (exclusive).
+   */
+  public int next(int size) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    switch (kind) {
+      case ZIPFIAN:
+        return nextZipfian(size, random.nextDouble());
+      case HOTSPOT:
+        int hotSetSize = Math.max(1, (int) (size * hotSetFraction));
+        if (hotSetSize == size || random.nextDouble() < hotAccessFraction) {
+          return random.nextInt(hotSetSize);
+        }
+        return hotSetSize + random.nextInt(size - hotSetSize);
+      default:
+        return random.nextInt(size);
+    }
+  }
+
+  /**
+   * Maps a uniform random number to a zipfian rank.
+   *
+   * @param size The number of albums.
+   * @param u    A uniform random number between 0 and 1.
+   * @return The rank, where 0 is the most popular album.
+   */
+  private int nextZipfian(int size, double u) {
+    ZipfianConstants constants = zipfianConstants;
+    if (constants == null || constants.size != size) {
+      constants = new ZipfianConstants(size, zipfianTheta);
+      zipfianConstants = constants;
+    }
+    double uz = u * constants.zetaN;
+    if (uz < 1) {
+      return 0;
+    }
+    if (uz < 1 + constants.halfPowTheta) {
+      return Math.min(1, size - 1);
+    }
+    int rank = (int) (size * Math.pow(constants.eta * u - constants.eta + 1, constants.alpha));
+    return Math.min(rank, size - 1);
+  }
+}
@@ -0,0 +1,121 @@
+package utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * utils.LatencyRecorder records request latencies per operation in HdrHistograms. Recording is wait-free and takes
+ * constant memory however long the run is, and latencies are kept with nanosecond input and three significant digits,
+ * so sub-millisecond latencies are not rounded away. Latencies can be read both for the whole run and per reporting
+ * interval.
+ *
+ * @author ambikakabra
+ */
+public class LatencyRecorder {
+  private static final long LOWEST_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+  private static final long HIGHEST_LATENCY_NANOS = TimeUnit.HOURS.toNanos(1);
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  /** The recorder, accumulated histograms and failure counts of one operation. */
+  private static final class OperationStats {
+    private final Recorder recorder = new Recorder(LOWEST_LATENCY_NANOS, HIGHEST_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+    private final Histogram total = newHistogram();
+    private final Histogram interval = newHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder intervalFailures = new LongAdder();
+    private Histogram recorded;
+
+    /** Moves the latencies recorded since the last call into the run and interval histograms. */
+    private void collect() {
+      recorded = recorder.getIntervalHistogram(recorded);
+      total.add(recorded);
+      interval.add(recorded);
+    }
+  }
+
+  private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+
+  /**
+   * Constructs a utils.LatencyRecorder for every operation.
+   */
+  public LatencyRecorder() {
+    for (Operation operation : Operation.values()) {
+      operations.put(operation, new OperationStats());
+    }
+  }
+
+  /**
+   * Records the outcome of a request. Requests that failed without a response should be recorded with status code 0.
+   *
+   * @param operation    The operation of the request.
+   * @param latencyNanos The latency of the request, in nanoseconds.
+   * @param statusCode   The HTTP status code of the response, or 0 if there was none.
+   */
+  public void record(Operation operation, long latencyNanos, int statusCode) {
+    OperationStats stats = operations.get(operation);
+    stats.recorder.recordValue(Math.max(LOWEST_LATENCY_NANOS, Math.min(latencyNanos, HIGHEST_LATENCY_NANOS)));
+    if (statusCode == 0 || statusCode >= 400) {
+      stats.failures.increment();
+      stats.intervalFailures.increment();
+    }
+  }
+
+  /**
+   * Gets the latencies recorded for an operation so far. The histogram is a copy and can be read while recording
+   * continues.
+   *
+   * @param operation The operation.
+   * @return The histogram of latencies in nanoseconds, empty if nothing was recorded.
+   */
+  public Histogram getHistogram(Operation operation) {
+    OperationStats stats = operations.get(operation);
+    synchronized (stats) {
+      stats.collect();
+      return stats.total.copy();
+    }
+  }
+
+  /**
+   * Gets the latencies recorded for an operation since the previous call, and starts a new interval.
+   *
+   * @param operation The operation.
+   * @return The histogram of latencies in nanoseconds recorded in the interval.
+   */
+  public Histogram getIntervalHistogram(Operation operation) {
+    OperationStats stats = operations.get(operation);
+    synchronized (stats) {
+      stats.collect();
+      Histogram interval = stats.interval.copy();
+      stats.interval.reset();
+      return interval;
+    }
+  }
+
+  /**
+   * Gets the number of failed requests recorded for an operation.
+   *
+   * @param operation The operation.
+   * @return The number of requests with an error status or no response.
+   */
+  public long getFailureCount(Operation operation) {
+    return operations.get(operation).failures.sum();
+  }
+
+  /**
+   * Gets the number of failed requests recorded for an operation since the previous call, and starts a new interval.
+   *
+   * @param operation The operation.
+   * @return The number of requests in the interval with an error status or no response.
+   */
+  public long getIntervalFailureCount(Operation operation) {
+    return operations.get(operation).intervalFailures.sumThenReset();
+  }
+
+  private static Histogram newHistogram() {
+    return new Histogram(LOWEST_LATENCY_NANOS, HIGHEST_LATENCY_NANOS, SIGNIFICANT_DIGITS);
+  }
+}
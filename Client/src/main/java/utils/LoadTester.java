@@ -13,27 +13,51 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.HdrHistogram.Histogram;
 
 public class LoadTester {
   private static final int MAX_RETRIES = 5;
   private static final int STATUS_CODE_400 = 400;
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+  private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+  private static final String INTERVAL_RESULTS_PATH = "./src/main/resources/IntervalResults.csv";
+  private static final int REQUESTS_PER_THREAD = 400;
 
-  public static void initialCalls(String IPAddr, int threadGroupSize, int numThreadGroups, int delay)
+  /**
+   * Runs the warm-up phase and then the load test.
+   *
+   * @param IPAddr          The server URI.
+   * @param threadGroupSize The size of each thread group.
+   * @param numThreadGroups The number of thread groups.
+   * @param delay           The delay, in seconds, between starting thread groups.
+   * @param virtualThreads  Whether client threads are virtual threads instead of platform threads.
+   * @param openLoop        The open-loop schedule to run after warm-up, or null to run the closed-loop test.
+   * @param reportIntervalSeconds The interval, in seconds, of live statistics during the run, or 0 for none.
+   * @param workload        The operation mix and album popularity, or null for the default closed-loop test of one
+   *                        album POST followed by reviews of that album.
+   * @throws InterruptedException If the execution is interrupted.
+   * @throws IOException          If an I/O error occurs.
+   */
+  public static void initialCalls(String IPAddr, int threadGroupSize, int numThreadGroups, int delay,
+      boolean virtualThreads, OpenLoopLoadTester openLoop, int reportIntervalSeconds, Workload workload)
       throws InterruptedException, IOException {
     Long startTime;
     IPAddr = IPAddr.trim();
 
-    HttpClient httpClient = HttpClient.newHttpClient();
+    ThreadFactory threadFactory = createThreadFactory(virtualThreads);
+    HttpClient httpClient = createHttpClient(virtualThreads);
     HttpRequest postAlbumRequest = postAlbumAPIRequest(IPAddr);
+    List<String> albumIds = Collections.synchronizedList(new ArrayList<>());
 
 
     List<Thread> threads = new ArrayList<>();
     for (int i = 0; i < 10; i++) {
-      Thread thread = new Thread(() -> {
+      Thread thread = threadFactory.newThread(() -> {
         for (int j = 0; j < 100; j++) {
           int tryCount = 0;
           boolean isSuccess = Boolean.FALSE;
@@ -46,6 +70,10 @@ public class LoadTester {
                 tryCount++;
               } else {
                 isSuccess = Boolean.TRUE;
+                String albumId = OpenLoopLoadTester.parseAlbumId(postResponse);
+                if (albumId != null) {
+                  albumIds.add(albumId);
+                }
               }
             } catch (Exception e) {
               tryCount++;
@@ -71,38 +99,48 @@ public class LoadTester {
       }
     }
     startTime = System.currentTimeMillis();
-    loadTesting(threadGroupSize, numThreadGroups, IPAddr, delay, startTime, postAlbumRequest);
+    LatencyRecorder latencyRecorder = new LatencyRecorder();
+    IntervalReporter intervalReporter = reportIntervalSeconds > 0
+        ? new IntervalReporter(latencyRecorder, reportIntervalSeconds, INTERVAL_RESULTS_PATH)
+        : null;
+    try {
+      if (openLoop != null) {
+        openLoop.run(createHttpClient(virtualThreads), IPAddr, postAlbumRequest, new ArrayList<>(albumIds),
+            workload != null ? workload : Workload.defaultWorkload(), latencyRecorder);
+      } else if (workload != null) {
+        workloadTesting(threadGroupSize, numThreadGroups, IPAddr, delay, postAlbumRequest, new ArrayList<>(albumIds),
+            workload, threadFactory, createHttpClient(virtualThreads), latencyRecorder);
+      } else {
+        loadTesting(threadGroupSize, numThreadGroups, IPAddr, delay, postAlbumRequest, threadFactory,
+            createHttpClient(virtualThreads), latencyRecorder);
+      }
+    } finally {
+      if (intervalReporter != null) {
+        intervalReporter.close();
+      }
+    }
+    printStatistics(startTime, latencyRecorder);
   }
 
-  private static void loadTesting(int threadGroupSize, int numThreadGroups, String ipAddr, int delay, Long startTime, HttpRequest postAlbumRequest)
-      throws InterruptedException, IOException {
-    HttpClient httpClient = HttpClient.newHttpClient();
-    ConcurrentLinkedQueue<Response> responses = new ConcurrentLinkedQueue<>();
+  private static void loadTesting(int threadGroupSize, int numThreadGroups, String ipAddr, int delay, HttpRequest postAlbumRequest,
+      ThreadFactory threadFactory, HttpClient httpClient, LatencyRecorder latencyRecorder) throws InterruptedException {
     List<Thread> threads = new ArrayList<>();
     for (int group = 0; group < numThreadGroups; group++) {
       for (int i = 0; i < threadGroupSize; i++) {
-        Thread thread = new Thread(() -> {
+        Thread thread = threadFactory.newThread(() -> {
           for (int j = 0; j < 100; j++) {
             int tryCount = 0;
             boolean isSuccess = Boolean.FALSE;
             while (!isSuccess && tryCount < MAX_RETRIES) {
               try {
-                long postStartTime = System.currentTimeMillis();
-                HttpResponse<String> postResponse = httpClient.send(postAlbumRequest, HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> postResponse = send(httpClient, postAlbumRequest, Operation.CREATE_ALBUM, latencyRecorder);
                 ImageMetaData responseBody = new Gson().fromJson(postResponse.body(), ImageMetaData.class);
                 String albumID = responseBody.getAlbumID();
                 HttpRequest reviewLikeRequest = postReviewAPIRequest(ipAddr, "like", albumID);
                 HttpRequest reviewDislikeRequest = postReviewAPIRequest(ipAddr, "dislike", albumID);
-                long postEndTime = System.currentTimeMillis();
-                long getStartTimeLike1 = System.currentTimeMillis();
-                HttpResponse<String> reviewPostResponse1 = httpClient.send(reviewLikeRequest, HttpResponse.BodyHandlers.ofString());
-                long getEndTimeLike1 = System.currentTimeMillis();
-                long getStartTimeLike2 = System.currentTimeMillis();
-                HttpResponse<String> reviewPostResponse2 = httpClient.send(reviewLikeRequest, HttpResponse.BodyHandlers.ofString());
-                long getEndTimeLike2 = System.currentTimeMillis();
-                long getStartTimeDislike1 = System.currentTimeMillis();
-                HttpResponse<String> reviewPostResponse3 = httpClient.send(reviewDislikeRequest, HttpResponse.BodyHandlers.ofString());
-                long getEndTimeDislike1 = System.currentTimeMillis();
+                HttpResponse<String> reviewPostResponse1 = send(httpClient, reviewLikeRequest, Operation.LIKE, latencyRecorder);
+                HttpResponse<String> reviewPostResponse2 = send(httpClient, reviewLikeRequest, Operation.LIKE, latencyRecorder);
+                HttpResponse<String> reviewPostResponse3 = send(httpClient, reviewDislikeRequest, Operation.DISLIKE, latencyRecorder);
                 if (reviewPostResponse3.statusCode() >= STATUS_CODE_400
                     && reviewPostResponse1.statusCode() >= STATUS_CODE_400
                     && reviewPostResponse2.statusCode() >= STATUS_CODE_400
@@ -111,11 +149,6 @@ public class LoadTester {
                 } else {
                   isSuccess = Boolean.TRUE;
                 }
-
-                responses.add(new Response(postStartTime, "POST", postEndTime - postStartTime, postResponse.statusCode()));
-                responses.add(new Response(getStartTimeLike1, "POST", getEndTimeLike1 - getStartTimeLike1, reviewPostResponse1.statusCode()));
-                responses.add(new Response(getStartTimeLike1, "POST", getEndTimeLike2 - getStartTimeLike2, reviewPostResponse2.statusCode()));
-                responses.add(new Response(getStartTimeLike1, "POST", getEndTimeDislike1 - getStartTimeDislike1, reviewPostResponse2.statusCode()));
               } catch (Exception e) {
                 tryCount++;
                 System.out.println("Post Request failed! Retrying again.");
@@ -141,110 +174,210 @@ public class LoadTester {
         e.printStackTrace();
       }
     }
+  }
 
-    long[] postLatencies = responses.stream()
-        .filter(r -> r.getRequestType().equals("POST"))
-        .mapToLong(Response::getLatency)
-        .sorted().toArray();
+  /**
+   * Runs the closed-loop test with a workload: every thread sends a fixed number of requests, each chosen by the
+   * workload, and waits for the response before sending the next one. Failed requests are recorded and not retried.
+   *
+   * @param threadGroupSize  The size of each thread group.
+   * @param numThreadGroups  The number of thread groups.
+   * @param ipAddr           The server URI.
+   * @param delay            The delay, in seconds, between starting thread groups.
+   * @param postAlbumRequest The album POST request.
+   * @param albumIds         The IDs of the albums created during warm-up.
+   * @param workload         The operation mix and album popularity.
+   * @param threadFactory    The factory for client threads.
+   * @param httpClient       The HTTP client.
+   * @param latencyRecorder  The latency recorder.
+   * @throws InterruptedException If the execution is interrupted.
+   */
+  private static void workloadTesting(int threadGroupSize, int numThreadGroups, String ipAddr, int delay,
+      HttpRequest postAlbumRequest, List<String> albumIds, Workload workload, ThreadFactory threadFactory,
+      HttpClient httpClient, LatencyRecorder latencyRecorder) throws InterruptedException {
+    if (albumIds.isEmpty()) {
+      throw new IllegalStateException("Warm-up created no albums to read or review");
+    }
+    List<Thread> threads = new ArrayList<>();
+    for (int group = 0; group < numThreadGroups; group++) {
+      for (int i = 0; i < threadGroupSize; i++) {
+        Thread thread = threadFactory.newThread(() -> {
+          for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+            Operation operation = workload.nextOperation();
+            HttpRequest request = buildRequest(operation, ipAddr, postAlbumRequest, workload.nextAlbumId(albumIds));
+            try {
+              send(httpClient, request, operation, latencyRecorder);
+            } catch (IOException e) {
+              System.out.println(operation.getName() + " request failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      Thread.sleep(delay * 1000);
+    }
 
+    for (Thread t : threads) {
+      t.join();
+    }
+  }
 
-    printStatistics(threadGroupSize, numThreadGroups, startTime, postLatencies, responses);
+  /**
+   * Builds the request for an operation.
+   *
+   * @param operation        The operation.
+   * @param ipAddr           The server URI.
+   * @param postAlbumRequest The album POST request.
+   * @param albumId          The album to read or review; ignored for album POSTs.
+   * @return The request.
+   */
+  static HttpRequest buildRequest(Operation operation, String ipAddr, HttpRequest postAlbumRequest, String albumId) {
+    switch (operation) {
+      case CREATE_ALBUM:
+        return postAlbumRequest;
+      case GET_ALBUM:
+        return getAlbumAPIRequest(ipAddr, albumId);
+      case DISLIKE:
+        return postReviewAPIRequest(ipAddr, "dislike", albumId);
+      default:
+        return postReviewAPIRequest(ipAddr, "like", albumId);
+    }
   }
 
   /**
-   * Prints statistics for the executed requests.
+   * Sends a request and records its latency, measured with nanosecond resolution. A request that fails without a
+   * response is recorded with status code 0 before the exception is rethrown.
    *
-   * @param threadGroupSize  The size of each thread group.
-   * @param numThreadGroups  The number of thread groups.
-   * @param startTime        The start time of the execution.
+   * @param httpClient      The HTTP client.
+   * @param request         The request to send.
+   * @param operation       The operation the latency is recorded under.
+   * @param latencyRecorder The latency recorder.
+   * @return The response.
+   * @throws IOException          If an I/O error occurs.
+   * @throws InterruptedException If the execution is interrupted.
+   */
+  private static HttpResponse<String> send(HttpClient httpClient, HttpRequest request, Operation operation,
+      LatencyRecorder latencyRecorder) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      latencyRecorder.record(operation, System.nanoTime() - start, response.statusCode());
+      return response;
+    } catch (IOException e) {
+      latencyRecorder.record(operation, System.nanoTime() - start, 0);
+      throw e;
+    }
+  }
+
+  /**
+   * Creates the factory for client threads. Virtual threads are cheap to block in {@code HttpClient.send}, so many
+   * thousands of concurrent clients can be simulated without a platform thread for each.
+   *
+   * @param virtualThreads Whether to create virtual threads.
+   * @return The thread factory.
+   */
+  private static ThreadFactory createThreadFactory(boolean virtualThreads) {
+    return virtualThreads
+        ? Thread.ofVirtual().name("load-tester-", 0).factory()
+        : Thread.ofPlatform().name("load-tester-", 0).factory();
+  }
+
+  /**
+   * Creates the HTTP client. In virtual-thread mode its internal tasks also run on virtual threads.
+   *
+   * @param virtualThreads Whether to use virtual threads.
+   * @return The HTTP client.
+   */
+  private static HttpClient createHttpClient(boolean virtualThreads) {
+    if (!virtualThreads) {
+      return HttpClient.newHttpClient();
+    }
+    return HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+  }
+
+  /**
+   * Prints statistics for the executed requests, overall and per operation. Warm-up requests are not included.
+   *
+   * @param startTime       The start time of the execution.
+   * @param latencyRecorder The latencies recorded during the execution.
    * @throws IOException If an I/O error occurs.
    */
-  private static void printStatistics(int threadGroupSize, int numThreadGroups, Long startTime, long[] postLatencies, ConcurrentLinkedQueue<Response> responses)
-      throws IOException {
+  private static void printStatistics(Long startTime, LatencyRecorder latencyRecorder) throws IOException {
     long endTime = System.currentTimeMillis();
-    int totalRequests = responses.size() + 1000;
-    long wallTime = (endTime - startTime) / 1000;
-    double totalLatency = responses.stream().mapToLong(Response::getLatency).sum();
-    double meanLatency = calculateMeanLatency(responses);
-    double medianLatency = calculateMedianLatency(responses, totalRequests);
-    double p99Latency = calculateP99Latency(responses, totalRequests);
-    double minResponseTime = responses.stream().mapToLong(Response::getLatency).min().orElse(0);
-    double maxResponseTime = responses.stream().mapToLong(Response::getLatency).max().orElse(0);
-    double minResponseTimePOST = calculateMinResponseTimeForType(responses, "POST");
-    double maxResponseTimePOST = calculateMaxResponseTimeForType(responses, "POST");
-    double successfulRequests = responses.stream().filter(r -> r.getStatusCode() == 200 || r.getStatusCode() == 201).count() + 1000;
-    double meanPostLatency = calculateMeanPostLatency(postLatencies);
-    double medianPostLatency = calculateMedianPostLatency(postLatencies);
-    double p99PostLatency = calculateP99PostLatency(postLatencies);
+    double wallTime = (endTime - startTime) / 1000.0;
+    Histogram overall = new Histogram(3);
+    long failedRequests = 0;
+    for (Operation operation : Operation.values()) {
+      overall.add(latencyRecorder.getHistogram(operation));
+      failedRequests += latencyRecorder.getFailureCount(operation);
+    }
+    long totalRequests = overall.getTotalCount();
 
     // Print statistics
     System.out.println("Total requests: " + totalRequests);
-    System.out.println("Successful requests: " + successfulRequests);
-    System.out.println("Unsuccessful requests: " + (totalRequests - successfulRequests));
+    System.out.println("Successful requests: " + (totalRequests - failedRequests));
+    System.out.println("Unsuccessful requests: " + failedRequests);
     System.out.println("\n\nOverall statistics:\n");
     System.out.println("Wall time: " + wallTime + " seconds");
-    System.out.println("avg. Throughput: " + (double) totalRequests / wallTime + " requests/second");
-    System.out.println("Mean total latency Total: " + meanLatency + " ms");
-    System.out.println("Median total latency Total: " + medianLatency + " ms");
-    System.out.println("99th percentile latency: " + p99Latency + " ms");
-    System.out.println("Min response time: " + minResponseTime + " ms");
-    System.out.println("Max response time: " + maxResponseTime + " ms\n\n");
-    System.out.println("POST request statistics:\n");
-    System.out.println("Mean POST latency: " + meanPostLatency + " ms");
-    System.out.println("Median POST latency: " + medianPostLatency + " ms");
-    System.out.println("99th percentile POST latency: " + p99PostLatency + " ms");
-    System.out.println("Min response time POST: " + minResponseTimePOST + " ms");
-    System.out.println("Max response time POST: " + maxResponseTimePOST + " ms\n\n");
+    System.out.println("avg. Throughput: " + totalRequests / wallTime + " requests/second");
+    printLatencies(overall);
+    for (Operation operation : Operation.values()) {
+      Histogram histogram = latencyRecorder.getHistogram(operation);
+      if (histogram.getTotalCount() > 0) {
+        System.out.println(operation.getName() + " statistics:\n");
+        printLatencies(histogram);
+      }
+    }
 
     // Writing to CSV file
-    writeResponsesToCSV(responses);
+    writeStatisticsToCSV(latencyRecorder);
+  }
+
+  /**
+   * Prints the latency distribution of a histogram.
+   *
+   * @param histogram The histogram of latencies in nanoseconds.
+   */
+  private static void printLatencies(Histogram histogram) {
+    System.out.println("Mean latency: " + toMillis(histogram.getMean()) + " ms");
+    for (double percentile : PERCENTILES) {
+      System.out.println("p" + percentile + " latency: "
+          + toMillis(histogram.getValueAtPercentile(percentile)) + " ms");
+    }
+    System.out.println("Min response time: " + toMillis(histogram.getMinValue()) + " ms");
+    System.out.println("Max response time: " + toMillis(histogram.getMaxValue()) + " ms\n\n");
   }
 
-  private static void writeResponsesToCSV(ConcurrentLinkedQueue<Response> responses) throws IOException {
+  private static void writeStatisticsToCSV(LatencyRecorder latencyRecorder) throws IOException {
     try (FileWriter outputFile = new FileWriter("./src/main/resources/LoadResults.csv");
         CSVWriter writer = new CSVWriter(outputFile)) {
 
-      writer.writeNext(new String[]{"Start Time", "Request Type", "Latency", "Status Code"});
+      writer.writeNext(new String[]{"Operation", "Requests", "Failures", "Mean (ms)", "p50 (ms)", "p90 (ms)",
+          "p99 (ms)", "p99.9 (ms)", "Max (ms)"});
 
-      for (Response response : responses) {
-        writer.writeNext(new String[]{String.valueOf(response.getStartTime()), response.getRequestType().toString(),
-            String.valueOf(response.getLatency()), String.valueOf(response.getStatusCode())});
+      for (Operation operation : Operation.values()) {
+        Histogram histogram = latencyRecorder.getHistogram(operation);
+        if (histogram.getTotalCount() == 0) {
+          continue;
+        }
+        List<String> row = new ArrayList<>(Arrays.asList(operation.getName(),
+            String.valueOf(histogram.getTotalCount()), String.valueOf(latencyRecorder.getFailureCount(operation)),
+            String.valueOf(toMillis(histogram.getMean()))));
+        for (double percentile : PERCENTILES) {
+          row.add(String.valueOf(toMillis(histogram.getValueAtPercentile(percentile))));
+        }
+        row.add(String.valueOf(toMillis(histogram.getMaxValue())));
+        writer.writeNext(row.toArray(new String[0]));
       }
     }
   }
 
-  private static double calculateMeanLatency(ConcurrentLinkedQueue<Response> responses) {
-    return responses.stream().mapToLong(Response::getLatency).average().orElse(0.0);
-  }
-
-  private static double calculateMedianLatency(ConcurrentLinkedQueue<Response> responses, int totalRequests) {
-    return responses.stream().sorted(Comparator.comparingLong(Response::getLatency))
-        .skip(totalRequests / 2).findFirst().orElse(new Response(0, "", 0, 0)).getLatency();
-  }
-
-  private static double calculateP99Latency(ConcurrentLinkedQueue<Response> responses, int totalRequests) {
-    return responses.stream().sorted(Comparator.comparingLong(Response::getLatency))
-        .skip((int) (totalRequests * 0.99)).findFirst().orElse(new Response(0, "", 0, 0)).getLatency();
-  }
-
-  private static double calculateMinResponseTimeForType(ConcurrentLinkedQueue<Response> responses, String type) {
-    return responses.stream().filter(r -> r.getRequestType().equals(type)).mapToLong(Response::getLatency).min().orElse(0);
-  }
-
-  private static double calculateMaxResponseTimeForType(ConcurrentLinkedQueue<Response> responses, String type) {
-    return responses.stream().filter(r -> r.getRequestType().equals(type)).mapToLong(Response::getLatency).max().orElse(0);
-  }
-
-  private static double calculateMeanPostLatency(long[] postLatencies) {
-    return postLatencies.length > 0 ? (double) Arrays.stream(postLatencies).sum() / postLatencies.length : 0;
-  }
-
-  private static double calculateMedianPostLatency(long[] postLatencies) {
-    return postLatencies.length > 0 ? postLatencies[(int) (postLatencies.length / 2)] : 0;
-  }
-
-  private static double calculateP99PostLatency(long[] postLatencies) {
-    return postLatencies.length > 0 ? postLatencies[(int) (postLatencies.length * 0.99)] : 0;
+  private static double toMillis(double nanos) {
+    return nanos / NANOS_PER_MILLI;
   }
 
   public static HttpRequest postAlbumAPIRequest(String IPAddr) {
@@ -304,4 +437,11 @@ public class LoadTester {
 
     return postReviewRequest;
   }
+
+  public static HttpRequest getAlbumAPIRequest(String IPAddr, String albumID) {
+    return HttpRequest.newBuilder()
+        .uri(URI.create(IPAddr + "/Server_war/albums/" + albumID))
+        .GET()
+        .build();
+  }
 }
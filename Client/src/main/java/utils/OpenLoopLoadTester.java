@@ -0,0 +1,130 @@
+package utils;
+
+import com.google.gson.Gson;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * utils.OpenLoopLoadTester sends requests on a fixed schedule at a target rate, whether or not earlier requests have
+ * completed. Unlike the closed-loop test, a slow server does not lower the offered load, and every latency is measured
+ * from the time the request was scheduled to be sent, so time spent queueing behind a slow server is included.
+ *
+ * <p>The rate can ramp up linearly from zero to the target over the first seconds of the run. The operation of every
+ * request, and the album it reads or reviews, are chosen by a {@link Workload} over the albums created during
+ * warm-up.
+ *
+ * @author ambikakabra
+ */
+public class OpenLoopLoadTester {
+  private static final long DRAIN_TIMEOUT_SECONDS = 30;
+
+  private final int targetRps;
+  private final int durationSeconds;
+  private final int rampSeconds;
+
+  /**
+   * Constructs an utils.OpenLoopLoadTester.
+   *
+   * @param targetRps       The target number of requests per second.
+   * @param durationSeconds The length of the run, in seconds, including the ramp.
+   * @param rampSeconds     The time, in seconds, over which the rate rises from zero to the target.
+   */
+  public OpenLoopLoadTester(int targetRps, int durationSeconds, int rampSeconds) {
+    if (targetRps <= 0 || durationSeconds <= 0 || rampSeconds < 0 || rampSeconds > durationSeconds) {
+      throw new IllegalArgumentException("Invalid open-loop schedule: rps=" + targetRps + ", durationSeconds="
+          + durationSeconds + ", rampSeconds=" + rampSeconds);
+    }
+    this.targetRps = targetRps;
+    this.durationSeconds = durationSeconds;
+    this.rampSeconds = rampSeconds;
+  }
+
+  /**
+   * Runs the schedule and waits for outstanding requests to complete.
+   *
+   * @param httpClient       The HTTP client used to send requests asynchronously.
+   * @param ipAddr           The server URI.
+   * @param postAlbumRequest The album POST request.
+   * @param albumIds         The IDs of albums to read or review.
+   * @param workload         The operation mix and album popularity.
+   * @param latencyRecorder  The recorder for the latency of every scheduled request.
+   * @throws InterruptedException If the execution is interrupted.
+   */
+  public void run(HttpClient httpClient, String ipAddr, HttpRequest postAlbumRequest, List<String> albumIds,
+      Workload workload, LatencyRecorder latencyRecorder) throws InterruptedException {
+    if (albumIds.isEmpty()) {
+      throw new IllegalStateException("Warm-up created no albums to read or review");
+    }
+    Semaphore completed = new Semaphore(0);
+    long totalRequests = getTotalRequests();
+    long startNanos = System.nanoTime();
+
+    for (long i = 0; i < totalRequests; i++) {
+      long intendedNanos = startNanos + getIntendedOffsetNanos(i);
+      long waitNanos = intendedNanos - System.nanoTime();
+      while (waitNanos > 0) {
+        LockSupport.parkNanos(waitNanos);
+        waitNanos = intendedNanos - System.nanoTime();
+      }
+
+      Operation operation = workload.nextOperation();
+      HttpRequest request = LoadTester.buildRequest(operation, ipAddr, postAlbumRequest,
+          workload.nextAlbumId(albumIds));
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+          .whenComplete((response, error) -> {
+            int statusCode = error == null ? response.statusCode() : 0;
+            latencyRecorder.record(operation, System.nanoTime() - intendedNanos, statusCode);
+            completed.release();
+          });
+    }
+
+    if (!completed.tryAcquire((int) totalRequests, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      System.out.println((totalRequests - completed.availablePermits()) + " requests did not complete within "
+          + DRAIN_TIMEOUT_SECONDS + " seconds after the schedule ended.");
+    }
+  }
+
+  /**
+   * Gets the number of requests the schedule sends: half the target rate during the ramp, the full rate afterwards.
+   *
+   * @return The total number of requests.
+   */
+  public long getTotalRequests() {
+    return (long) targetRps * rampSeconds / 2 + (long) targetRps * (durationSeconds - rampSeconds);
+  }
+
+  /**
+   * Gets the time at which a request is scheduled, relative to the start of the run. During the ramp the rate grows
+   * linearly, so n(t) = rps * t^2 / (2 * ramp) requests have been sent by time t; afterwards one request is sent
+   * every 1/rps seconds.
+   *
+   * @param index The index of the request.
+   * @return The scheduled send time, in nanoseconds from the start of the run.
+   */
+  long getIntendedOffsetNanos(long index) {
+    double rampRequests = (double) targetRps * rampSeconds / 2;
+    double seconds = index < rampRequests
+        ? Math.sqrt(2.0 * rampSeconds * index / targetRps)
+        : rampSeconds + (index - rampRequests) / targetRps;
+    return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * Reads the album ID from the response to an album POST.
+   *
+   * @param response The response.
+   * @return The album ID, or null if the album was not created.
+   */
+  static String parseAlbumId(HttpResponse<String> response) {
+    if (response.statusCode() >= 400) {
+      return null;
+    }
+    ImageMetaData metaData = new Gson().fromJson(response.body(), ImageMetaData.class);
+    return metaData == null ? null : metaData.getAlbumID();
+  }
+}
@@ -0,0 +1,29 @@
+package utils;
+
+/**
+ * utils.Operation enumerates the kinds of requests the load tester sends. Latencies are recorded and reported per
+ * operation.
+ *
+ * @author ambikakabra
+ */
+public enum Operation {
+  CREATE_ALBUM("createAlbum"),
+  LIKE("like"),
+  DISLIKE("dislike"),
+  GET_ALBUM("getAlbum");
+
+  private final String name;
+
+  Operation(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the name of the operation used in reports.
+   *
+   * @return The operation name.
+   */
+  public String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,132 @@
+package utils;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * utils.Workload defines the requests a load test sends: the mix of operations and the popularity of the albums that
+ * reads and reviews target. A workload is read from a properties file such as:
+ * <pre>
+ * getAlbum=70
+ * createAlbum=5
+ * like=20
+ * dislike=5
+ * keyDistribution=zipfian
+ * zipfian.theta=0.99
+ * </pre>
+ * Operation weights are relative and default to 0. keyDistribution is uniform (the default), zipfian (with
+ * zipfian.theta, default 0.99) or hotspot (with hotspot.setFraction, default 0.2, and hotspot.accessFraction,
+ * default 0.8).
+ *
+ * @author ambikakabra
+ */
+public class Workload {
+  private final Operation[] operations = Operation.values();
+  private final double[] cumulativeWeights = new double[operations.length];
+  private final KeyDistribution keyDistribution;
+
+  /**
+   * Constructs a utils.Workload.
+   *
+   * @param weights         The relative weight of each operation, indexed by ordinal.
+   * @param keyDistribution The popularity distribution of albums.
+   */
+  public Workload(double[] weights, KeyDistribution keyDistribution) {
+    double total = 0;
+    for (int i = 0; i < operations.length; i++) {
+      if (weights[i] < 0) {
+        throw new IllegalArgumentException("Negative weight for " + operations[i].getName());
+      }
+      total += weights[i];
+      cumulativeWeights[i] = total;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("Workload has no operations");
+    }
+    for (int i = 0; i < operations.length; i++) {
+      cumulativeWeights[i] /= total;
+    }
+    this.keyDistribution = keyDistribution;
+  }
+
+  /**
+   * Creates the default workload: one album POST for every two likes and one dislike, on uniformly chosen albums.
+   *
+   * @return The workload.
+   */
+  public static Workload defaultWorkload() {
+    double[] weights = new double[Operation.values().length];
+    weights[Operation.CREATE_ALBUM.ordinal()] = 1;
+    weights[Operation.LIKE.ordinal()] = 2;
+    weights[Operation.DISLIKE.ordinal()] = 1;
+    return new Workload(weights, KeyDistribution.uniform());
+  }
+
+  /**
+   * Reads a workload from a properties file.
+   *
+   * @param path The path of the file.
+   * @return The workload.
+   * @throws IOException If the file cannot be read.
+   */
+  public static Workload load(String path) throws IOException {
+    Properties properties = new Properties();
+    try (Reader reader = new FileReader(path)) {
+      properties.load(reader);
+    }
+
+    double[] weights = new double[Operation.values().length];
+    for (Operation operation : Operation.values()) {
+      weights[operation.ordinal()] = Double.parseDouble(properties.getProperty(operation.getName(), "0"));
+    }
+
+    String distribution = properties.getProperty("keyDistribution", "uniform");
+    KeyDistribution keyDistribution;
+    switch (distribution) {
+      case "uniform":
+        keyDistribution = KeyDistribution.uniform();
+        break;
+      case "zipfian":
+        keyDistribution = KeyDistribution.zipfian(
+            Double.parseDouble(properties.getProperty("zipfian.theta", "0.99")));
+        break;
+      case "hotspot":
+        keyDistribution = KeyDistribution.hotspot(
+            Double.parseDouble(properties.getProperty("hotspot.setFraction", "0.2")),
+            Double.parseDouble(properties.getProperty("hotspot.accessFraction", "0.8")));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown key distribution: " + distribution);
+    }
+    return new Workload(weights, keyDistribution);
+  }
+
+  /**
+   * Chooses the operation of the next request.
+   *
+   * @return The operation.
+   */
+  public Operation nextOperation() {
+    double u = ThreadLocalRandom.current().nextDouble();
+    for (int i = 0; i < operations.length; i++) {
+      if (u < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    return operations[operations.length - 1];
+  }
+
+  /**
+   * Chooses the album the next read or review targets.
+   *
+   * @param albumIds The IDs of the albums created during warm-up; must not be empty.
+   * @return The album ID.
+   */
+  public String nextAlbumId(List<String> albumIds) {
+    return albumIds.get(keyDistribution.next(albumIds.size()));
+  }
+}
@@ -0,0 +1,321 @@
+package factory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import model.AlbumInfo;
+
+/**
+ * A bounded, read-through cache of album metadata. The cache is split into segments, each an access-ordered LRU map
+ * guarded by its own lock, so lookups of different albums rarely contend. Entries expire after a time to live, and
+ * albums that do not exist are cached as negative entries with a shorter time to live. Existence checks may also cache
+ * that an album exists without loading its metadata.
+ * @author ambikakabra
+ */
+public class AlbumCache {
+  private static final int NUM_SEGMENTS = 16;
+
+  /** A cached album, an album known to exist whose metadata is not loaded, or a negative entry. */
+  private static final class CachedAlbum {
+    private final AlbumInfo album;
+    private final boolean exists;
+    private final long expiresAtNanos;
+
+    private CachedAlbum(AlbumInfo album, boolean exists, long expiresAtNanos) {
+      this.album = album;
+      this.exists = exists;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  /** An LRU map holding one segment of the cache. */
+  private final class Segment extends LinkedHashMap<String, CachedAlbum> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    private Segment(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedAlbum> eldest) {
+      if (size() > maxSize) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private final Segment[] segments = new Segment[NUM_SEGMENTS];
+  private final long ttlNanos;
+  private final long negativeTtlNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructs an AlbumCache.
+   *
+   * @param maxSize       The maximum number of albums held in the cache.
+   * @param ttlMs         The time, in milliseconds, an album stays cached.
+   * @param negativeTtlMs The time, in milliseconds, an unknown album ID stays cached as not found.
+   */
+  public AlbumCache(int maxSize, long ttlMs, long negativeTtlMs) {
+    int segmentSize = Math.max(1, (maxSize + NUM_SEGMENTS - 1) / NUM_SEGMENTS);
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      segments[i] = new Segment(segmentSize);
+    }
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+  }
+
+  /**
+   * Gets an album from the cache, loading and caching it on a miss. Exceptions thrown by the loader are propagated and
+   * nothing is cached.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The function that loads the album, returning null if it does not exist.
+   * @return The album, or null if it does not exist.
+   */
+  public AlbumInfo get(String albumId, Function<String, AlbumInfo> loader) {
+    CachedAlbum entry = lookup(albumId);
+    if (entry != null && (entry.album != null || !entry.exists)) {
+      hits.increment();
+      return entry.album;
+    }
+
+    misses.increment();
+    AlbumInfo album = loader.apply(albumId);
+    store(albumId, album, album != null);
+    return album;
+  }
+
+  /**
+   * Gets many albums from the cache, loading all misses with one call of the loader and caching the outcome of every
+   * loaded album. Exceptions thrown by the loader are propagated and nothing is cached.
+   *
+   * @param albumIds The unique identifiers of the albums.
+   * @param loader   The function that loads the albums with the given IDs, leaving out the albums that do not exist.
+   * @return The albums by ID in the order of the IDs, with null for the albums that do not exist.
+   */
+  public Map<String, AlbumInfo> getAll(Collection<String> albumIds,
+      Function<List<String>, Map<String, AlbumInfo>> loader) {
+    Map<String, AlbumInfo> albums = new LinkedHashMap<>();
+    List<String> missing = new ArrayList<>();
+    for (String albumId : albumIds) {
+      CachedAlbum entry = lookup(albumId);
+      if (entry != null && (entry.album != null || !entry.exists)) {
+        hits.increment();
+        albums.put(albumId, entry.album);
+      } else {
+        misses.increment();
+        albums.put(albumId, null);
+        missing.add(albumId);
+      }
+    }
+    if (missing.isEmpty()) {
+      return albums;
+    }
+
+    Map<String, AlbumInfo> loaded = loader.apply(missing);
+    for (String albumId : missing) {
+      AlbumInfo album = loaded.get(albumId);
+      store(albumId, album, album != null);
+      albums.put(albumId, album);
+    }
+    return albums;
+  }
+
+  /**
+   * Checks whether an album exists, using any cached entry for it and running the existence check on a miss. Only
+   * the outcome of the check is cached, so a later {@link #get} still loads the metadata.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The existence check to run on a miss.
+   * @return True if the album exists.
+   */
+  public boolean exists(String albumId, Predicate<String> loader) {
+    CachedAlbum entry = lookup(albumId);
+    if (entry != null) {
+      hits.increment();
+      return entry.exists;
+    }
+
+    misses.increment();
+    boolean exists = loader.test(albumId);
+    storeExists(albumId, exists);
+    return exists;
+  }
+
+  /**
+   * Gets an album from the cache, loading it asynchronously on a miss. The outcome is cached when the load completes;
+   * a failed load is propagated and nothing is cached.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The function that starts loading the album, completing with null if it does not exist.
+   * @return A future of the album, or of null if it does not exist.
+   */
+  public CompletableFuture<AlbumInfo> getAsync(String albumId,
+      Function<String, CompletableFuture<AlbumInfo>> loader) {
+    CachedAlbum entry = lookup(albumId);
+    if (entry != null && (entry.album != null || !entry.exists)) {
+      hits.increment();
+      return CompletableFuture.completedFuture(entry.album);
+    }
+
+    misses.increment();
+    return loader.apply(albumId).thenApply(album -> {
+      store(albumId, album, album != null);
+      return album;
+    });
+  }
+
+  /**
+   * Checks asynchronously whether an album exists, using any cached entry for it and running the existence check on a
+   * miss.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The function that starts the existence check.
+   * @return A future that completes with true if the album exists.
+   */
+  public CompletableFuture<Boolean> existsAsync(String albumId, Function<String, CompletableFuture<Boolean>> loader) {
+    CachedAlbum entry = lookup(albumId);
+    if (entry != null) {
+      hits.increment();
+      return CompletableFuture.completedFuture(entry.exists);
+    }
+
+    misses.increment();
+    return loader.apply(albumId).thenApply(exists -> {
+      storeExists(albumId, exists);
+      return exists;
+    });
+  }
+
+  /**
+   * Caches an album, typically one that has just been saved.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param album   The album information.
+   */
+  public void put(String albumId, AlbumInfo album) {
+    store(albumId, album, album != null);
+  }
+
+  /**
+   * Gets the number of lookups served from the cache.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Gets the number of lookups that had to be loaded.
+   *
+   * @return The miss count.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Gets the number of entries removed because the cache was full or the entry had expired.
+   *
+   * @return The eviction count.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Gets the number of entries currently cached, including negative entries.
+   *
+   * @return The cache size.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Gets the live entry for an album ID, removing it if it has expired.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return The entry, or null if there is no live entry.
+   */
+  private CachedAlbum lookup(String albumId) {
+    Segment segment = segmentFor(albumId);
+    synchronized (segment) {
+      CachedAlbum entry = segment.get(albumId);
+      if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+        segment.remove(albumId);
+        evictions.increment();
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Stores an entry for an album ID.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param album   The album information, or null if it is not loaded or the album does not exist.
+   * @param exists  Whether the album exists.
+   */
+  private void store(String albumId, AlbumInfo album, boolean exists) {
+    long ttl = exists ? ttlNanos : negativeTtlNanos;
+    CachedAlbum entry = new CachedAlbum(album, exists, System.nanoTime() + ttl);
+    Segment segment = segmentFor(albumId);
+    synchronized (segment) {
+      segment.put(albumId, entry);
+    }
+  }
+
+  /**
+   * Stores the outcome of an existence check for an album ID, unless a live entry with the album's metadata was
+   * cached while the check ran, which would otherwise be replaced by an entry without metadata.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param exists  Whether the album exists.
+   */
+  private void storeExists(String albumId, boolean exists) {
+    long ttl = exists ? ttlNanos : negativeTtlNanos;
+    CachedAlbum entry = new CachedAlbum(null, exists, System.nanoTime() + ttl);
+    Segment segment = segmentFor(albumId);
+    synchronized (segment) {
+      CachedAlbum current = segment.get(albumId);
+      if (current == null || current.album == null || current.expiresAtNanos - System.nanoTime() <= 0) {
+        segment.put(albumId, entry);
+      }
+    }
+  }
+
+  /**
+   * Selects the segment that holds an album ID.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return The segment for the ID.
+   */
+  private Segment segmentFor(String albumId) {
+    int hash = albumId.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (NUM_SEGMENTS - 1)];
+  }
+}
@@ -0,0 +1,218 @@
+package factory;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import java.util.concurrent.CompletableFuture;
+import model.AlbumInfo;
+import model.ImageMetaData;
+import model.ReviewCounts;
+import model.StoredImage;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * The AsyncConnectionManager class is the non-blocking counterpart of {@link ConnectionManager}. It uses the MongoDB
+ * reactive-streams driver and the shared album cache, and returns futures, so a servlet thread is not held while a
+ * query is in flight. Failures are handled like in ConnectionManager: they are logged and reported as a missing album.
+ * @author ambikakabra
+ */
+public class AsyncConnectionManager {
+  /** The statistics of the reactive client's own connection pool. */
+  private static final MongoPoolStats poolStats = new MongoPoolStats();
+  private static MongoClient mongoClient;
+  private static MongoCollection<Document> albumsCollection;
+  private static MongoCollection<Document> reviewsCollection;
+
+  /**
+   * Retrieves album information using its unique ID, from the album cache when possible.
+   *
+   * @param albumId The unique identifier of the album to retrieve.
+   * @return A future of the album's information, or of null if the album is not found.
+   */
+  public CompletableFuture<AlbumInfo> getAlbumByIdAsync(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return ConnectionManager.getAlbumCache()
+        .getAsync(albumId, id -> first(getAlbumsCollection()
+            .find(new Document("_id", new ObjectId(id)))
+            .projection(ConnectionManager.ALBUM_INFO_PROJECTION)
+            .first())
+            .thenApply(albumDoc -> albumDoc == null ? null : new AlbumInfo(id, albumDoc.getString("artist"),
+                albumDoc.getString("title"), albumDoc.getString("year"))))
+        .exceptionally(e -> {
+          e.printStackTrace();
+          return null;
+        });
+  }
+
+  /**
+   * Checks whether an album exists, from the album cache when possible and with an _id-only query otherwise.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return A future that completes with true if the album exists, false if it does not or cannot be checked.
+   */
+  public CompletableFuture<Boolean> albumExistsAsync(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return ConnectionManager.getAlbumCache()
+        .existsAsync(albumId, id -> first(getAlbumsCollection()
+            .find(new Document("_id", new ObjectId(id)))
+            .projection(ConnectionManager.ALBUM_ID_PROJECTION)
+            .first())
+            .thenApply(albumDoc -> albumDoc != null))
+        .exceptionally(e -> {
+          e.printStackTrace();
+          return false;
+        });
+  }
+
+  /**
+   * Reads the stored like and dislike counts of an album.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return A future of the counts, zero if the album has no reviews, or of null if they cannot be read.
+   */
+  public CompletableFuture<ReviewCounts> getReviewCountsAsync(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return CompletableFuture.completedFuture(new ReviewCounts(0, 0));
+    }
+    MongoCollection<Document> collection =
+        ConnectionManager.REVIEWS_ON_ALBUM ? getAlbumsCollection() : getReviewsCollection();
+    return first(collection
+        .find(ConnectionManager.reviewFilter(new ObjectId(albumId)))
+        .projection(ConnectionManager.REVIEW_COUNTS_PROJECTION)
+        .first())
+        .thenApply(ConnectionManager::toReviewCounts)
+        .exceptionally(e -> {
+          e.printStackTrace();
+          return null;
+        });
+  }
+
+  /**
+   * Saves album information for an image that is already in the image store, and adds the album to the album cache.
+   * If the album cannot be saved, the image is deleted again.
+   *
+   * @param albumInfo An AlbumInfo object containing information about the album to be saved.
+   * @param storedImage The reference and size of the album's image.
+   * @return A future of the unique ID of the saved album and the size of the image, or of null if the album could not
+   *     be saved.
+   */
+  public CompletableFuture<ImageMetaData> saveAlbumAsync(AlbumInfo albumInfo, StoredImage storedImage) {
+    ObjectId id = new ObjectId();
+    Document document = new Document("_id", id)
+        .append("artist", albumInfo.getArtist())
+        .append("title", albumInfo.getTitle())
+        .append("year", albumInfo.getYear())
+        .append("imageId", storedImage.getImageId())
+        .append("imageSize", storedImage.getSize());
+    return first(getAlbumsCollection().insertOne(document))
+        .thenApply(result -> {
+          ConnectionManager.getAlbumCache().put(id.toString(),
+              new AlbumInfo(id.toString(), albumInfo.getArtist(), albumInfo.getTitle(), albumInfo.getYear()));
+          return new ImageMetaData(id.toString(), storedImage.getSize());
+        })
+        .exceptionally(e -> {
+          e.printStackTrace();
+          new ConnectionManager().deleteImageQuietly(storedImage.getImageId());
+          return null;
+        });
+  }
+
+  /**
+   * Closes the reactive MongoDB client if it has been created.
+   */
+  public static synchronized void close() {
+    if (mongoClient != null) {
+      mongoClient.close();
+      mongoClient = null;
+      albumsCollection = null;
+      reviewsCollection = null;
+    }
+  }
+
+  /**
+   * Gets the connection pool and command statistics of the reactive client, which are all zero until it is used.
+   *
+   * @return The pool statistics.
+   */
+  public static MongoPoolStats getPoolStats() {
+    return poolStats;
+  }
+
+  /**
+   * Gets the "albums" collection, creating the reactive client on first use.
+   *
+   * @return The albums collection.
+   */
+  private static synchronized MongoCollection<Document> getAlbumsCollection() {
+    if (albumsCollection == null) {
+      connect();
+    }
+    return albumsCollection;
+  }
+
+  /**
+   * Gets the "reviews" collection, creating the reactive client on first use.
+   *
+   * @return The reviews collection.
+   */
+  private static synchronized MongoCollection<Document> getReviewsCollection() {
+    if (reviewsCollection == null) {
+      connect();
+    }
+    return reviewsCollection;
+  }
+
+  /**
+   * Creates the reactive client, with a pool of {@code mongodb.async.pool.maxSize} connections next to the
+   * synchronous client's pool, and looks up the collections.
+   */
+  private static void connect() {
+    mongoClient = MongoClients.create(MongoClientFactory.createSettings(poolStats,
+        ServerConfig.getInt("mongodb.async.pool.maxSize", 50)));
+    MongoDatabase database = mongoClient.getDatabase(ConnectionHelper.DATABASE_NAME);
+    albumsCollection = database.getCollection("albums");
+    reviewsCollection = database.getCollection("reviews");
+  }
+
+  /**
+   * Adapts a publisher of at most one item to a future.
+   *
+   * @param publisher The publisher.
+   * @param <T> The type of the item.
+   * @return A future of the first item, or of null if the publisher completes without one.
+   */
+  private static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    publisher.subscribe(new Subscriber<T>() {
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(T item) {
+        future.complete(item);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        future.completeExceptionally(error);
+      }
+
+      @Override
+      public void onComplete() {
+        future.complete(null);
+      }
+    });
+    return future;
+  }
+}
@@ -0,0 +1,130 @@
+package factory;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A bounded pool of RabbitMQ channels for publishing. AMQP channels must not be used by several threads at once, so
+ * every publisher borrows a channel for exclusive use and returns it afterwards. Channels are created lazily on the
+ * shared connection, checked for health when borrowed and returned, and replaced when they have been closed.
+ *
+ * <p>In publisher-confirm mode every channel is put in confirm mode when it is created and gets its own
+ * {@link ConfirmTracker}.
+ * @author ambikakabra
+ */
+public class ChannelPool {
+  private final BlockingQueue<Channel> idleChannels = new LinkedBlockingQueue<>();
+  private final Map<Channel, ConfirmTracker> confirmTrackers = new ConcurrentHashMap<>();
+  private final Semaphore permits;
+  private final int maxChannels;
+  private final long borrowTimeoutMs;
+  private final boolean publisherConfirms;
+
+  /**
+   * Constructs a ChannelPool.
+   *
+   * @param maxChannels       The maximum number of channels that can be borrowed at the same time.
+   * @param borrowTimeoutMs   The maximum time, in milliseconds, to wait for a channel when all of them are in use.
+   * @param publisherConfirms Whether channels are put in publisher-confirm mode.
+   */
+  public ChannelPool(int maxChannels, long borrowTimeoutMs, boolean publisherConfirms) {
+    this.permits = new Semaphore(maxChannels, true);
+    this.maxChannels = maxChannels;
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    this.publisherConfirms = publisherConfirms;
+  }
+
+  /**
+   * Borrows an open channel for exclusive use. It must be handed back with {@link #release(Channel)}.
+   *
+   * @return An open channel.
+   * @throws TimeoutException     If no channel became available in time, or the connection could not be created.
+   * @throws InterruptedException If the thread is interrupted while waiting for a channel.
+   * @throws IOException          If a new channel cannot be created.
+   */
+  public Channel borrow() throws TimeoutException, InterruptedException, IOException {
+    if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+      throw new TimeoutException("Timed out waiting for a RabbitMQ channel");
+    }
+    try {
+      Channel channel = idleChannels.poll();
+      while (channel != null && !channel.isOpen()) {
+        confirmTrackers.remove(channel);
+        channel = idleChannels.poll();
+      }
+      return channel != null ? channel : createChannel();
+    } catch (IOException | TimeoutException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a borrowed channel to the pool. Channels that have been closed in the meantime are dropped, and a new one
+   * is created by a later borrow.
+   *
+   * @param channel The channel obtained from {@link #borrow()}.
+   */
+  public void release(Channel channel) {
+    if (channel.isOpen()) {
+      idleChannels.offer(channel);
+    } else {
+      confirmTrackers.remove(channel);
+    }
+    permits.release();
+  }
+
+  /**
+   * Gets the confirm tracker of a channel created by this pool.
+   *
+   * @param channel A channel obtained from {@link #borrow()}.
+   * @return The channel's confirm tracker, or null if publisher confirms are disabled.
+   */
+  public ConfirmTracker getConfirmTracker(Channel channel) {
+    return confirmTrackers.get(channel);
+  }
+
+  /**
+   * Checks whether the channels of this pool are in publisher-confirm mode.
+   *
+   * @return True if publisher confirms are enabled.
+   */
+  public boolean isPublisherConfirms() {
+    return publisherConfirms;
+  }
+
+  /**
+   * Gets the number of channels that are currently borrowed.
+   *
+   * @return The number of borrowed channels.
+   */
+  public int getBorrowedCount() {
+    return maxChannels - permits.availablePermits();
+  }
+
+  /**
+   * Creates a new channel on the shared connection, in confirm mode if publisher confirms are enabled.
+   *
+   * @return The new channel.
+   * @throws TimeoutException If the connection could not be created.
+   * @throws IOException      If the channel cannot be created.
+   */
+  private Channel createChannel() throws TimeoutException, IOException {
+    Channel channel = RabbitMQConnectionManager.getConnection().createChannel();
+    if (publisherConfirms) {
+      ConfirmTracker tracker = new ConfirmTracker();
+      channel.confirmSelect();
+      channel.addConfirmListener(tracker);
+      channel.addShutdownListener(tracker::failAll);
+      confirmTrackers.put(channel, tracker);
+    }
+    return channel;
+  }
+}
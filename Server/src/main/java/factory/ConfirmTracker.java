@@ -0,0 +1,98 @@
+package factory;
+
+import com.rabbitmq.client.ConfirmListener;
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Tracks the outstanding publishes of one channel in publisher-confirm mode. Every publish registers a future under
+ * its sequence number, and the broker's acks and nacks resolve those futures, all of them at once when the broker
+ * confirms a whole batch with {@code multiple=true}.
+ * @author ambikakabra
+ */
+public class ConfirmTracker implements ConfirmListener {
+  private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+
+  /**
+   * Registers a publish that is about to be sent.
+   *
+   * @param sequenceNumber The publish sequence number, from {@code Channel.getNextPublishSeqNo()}.
+   * @return A future that completes when the broker confirms the publish, or fails when it is nacked.
+   */
+  public CompletableFuture<Void> track(long sequenceNumber) {
+    CompletableFuture<Void> confirmation = new CompletableFuture<>();
+    outstanding.put(sequenceNumber, confirmation);
+    return confirmation;
+  }
+
+  /**
+   * Fails a single publish that could not be sent.
+   *
+   * @param sequenceNumber The publish sequence number.
+   * @param cause          The reason the publish failed.
+   */
+  public void fail(long sequenceNumber, Throwable cause) {
+    CompletableFuture<Void> confirmation = outstanding.remove(sequenceNumber);
+    if (confirmation != null) {
+      confirmation.completeExceptionally(cause);
+    }
+  }
+
+  /**
+   * Fails every outstanding publish, for example because the channel was closed before the broker confirmed them.
+   *
+   * @param cause The reason the publishes failed.
+   */
+  public void failAll(Throwable cause) {
+    resolve(Long.MAX_VALUE, true, cause);
+  }
+
+  @Override
+  public void handleAck(long deliveryTag, boolean multiple) {
+    resolve(deliveryTag, multiple, null);
+  }
+
+  @Override
+  public void handleNack(long deliveryTag, boolean multiple) throws IOException {
+    resolve(deliveryTag, multiple, new IOException("Message was rejected by the broker"));
+  }
+
+  /**
+   * Completes the futures covered by a confirm.
+   *
+   * @param deliveryTag The sequence number in the confirm.
+   * @param multiple    Whether every sequence number up to and including the tag is confirmed.
+   * @param cause       The failure to report, or null for an ack.
+   */
+  private void resolve(long deliveryTag, boolean multiple, Throwable cause) {
+    if (multiple) {
+      NavigableMap<Long, CompletableFuture<Void>> confirmed = outstanding.headMap(deliveryTag, true);
+      confirmed.forEach((sequenceNumber, confirmation) -> {
+        if (confirmed.remove(sequenceNumber, confirmation)) {
+          complete(confirmation, cause);
+        }
+      });
+    } else {
+      CompletableFuture<Void> confirmation = outstanding.remove(deliveryTag);
+      if (confirmation != null) {
+        complete(confirmation, cause);
+      }
+    }
+  }
+
+  /**
+   * Completes a single future with success or failure.
+   *
+   * @param confirmation The future to complete.
+   * @param cause        The failure to report, or null for an ack.
+   */
+  private void complete(CompletableFuture<Void> confirmation, Throwable cause) {
+    if (cause == null) {
+      confirmation.complete(null);
+    } else {
+      confirmation.completeExceptionally(cause);
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package factory;
 
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
@@ -11,9 +10,12 @@ import org.bson.Document;
  * @author ambikakabra
  */
 public class ConnectionHelper {
-  private static String connectionString = "mongodb://localhost:27017/?directConnection=true&serverSelectionTimeoutMS=2000&appName=mongosh+2.0.2";
-  private static MongoClient mongoClient = MongoClients.create(connectionString);
-  private static MongoDatabase sampleTrainingDB = mongoClient.getDatabase("AlbumStore");
+  /** The name of the database that holds the albums and reviews. */
+  static final String DATABASE_NAME = "AlbumStore";
+
+  private static final MongoPoolStats poolStats = new MongoPoolStats();
+  private static MongoClient mongoClient = MongoClientFactory.create(poolStats);
+  private static MongoDatabase sampleTrainingDB = mongoClient.getDatabase(DATABASE_NAME);
 
   /**
    * A reference to the MongoDB collection named "albums" in the "AlbumStore" database.
@@ -24,4 +26,29 @@ public class ConnectionHelper {
    * A reference to the MongoDB collection named "reviews" in the "AlbumStore" database.
    */
   static MongoCollection<Document> reviewsCollection = sampleTrainingDB.getCollection("reviews");
+
+  /**
+   * Gets the "AlbumStore" database.
+   *
+   * @return The MongoDB database.
+   */
+  static MongoDatabase getDatabase() {
+    return sampleTrainingDB;
+  }
+
+  /**
+   * Gets the connection pool and command statistics of the shared MongoDB client.
+   *
+   * @return The pool statistics.
+   */
+  public static MongoPoolStats getPoolStats() {
+    return poolStats;
+  }
+
+  /**
+   * Closes the shared MongoDB client and its connection pool.
+   */
+  public static void close() {
+    mongoClient.close();
+  }
 }
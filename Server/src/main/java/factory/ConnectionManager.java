@@ -1,75 +1,484 @@
 package factory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
-import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.model.WriteModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import model.AlbumInfo;
 import model.ImageMetaData;
+import model.ReviewCounts;
+import model.StoredImage;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import store.AlbumStore;
+import store.PartialWriteException;
+import store.ReviewStore;
 
 /**
  * The ConnectionManager class is responsible for interacting with a MongoDB database to fetch album information and save new albums and its reviews
  * @author ambikakabra
  */
-public class ConnectionManager {
+public class ConnectionManager implements AlbumStore, ReviewStore {
+  /** The album fields returned by metadata lookups; the image is never read back. */
+  static final Bson ALBUM_INFO_PROJECTION = Projections.include("artist", "title", "year");
+
+  /** Projection for existence checks, which only need the indexed _id field. */
+  static final Bson ALBUM_ID_PROJECTION = Projections.include("_id");
+
+  /** The review fields returned by review count lookups. */
+  static final Bson REVIEW_COUNTS_PROJECTION = Projections.include("likes", "dislikes");
+
+  /** Whether the review counts are kept on the album documents instead of in the "reviews" collection. */
+  static final boolean REVIEWS_ON_ALBUM = ServerConfig.getBoolean("reviews.colocated", false);
+
+  /** Read-through cache of album metadata shared by all connection managers. */
+  private static final AlbumCache albumCache = new AlbumCache(
+      ServerConfig.getInt("album.cache.maxSize", 100000),
+      ServerConfig.getLong("album.cache.ttlMs", 300000),
+      ServerConfig.getLong("album.cache.negativeTtlMs", 5000));
+
   /**
-   * Retrieves album information from the database using its unique ID.
+   * Retrieves album information using its unique ID, from the album cache when possible and from the database
+   * otherwise.
    *
    * @param albumId The unique identifier of the album to retrieve.
    * @return An AlbumInfo object representing the album's information, or null if the album is not found.
-   * @throws RuntimeException if there is an error while fetching the album.
    */
+  @Override
   public AlbumInfo getAlbumById(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return null;
+    }
     try {
-      ObjectId objectId = new ObjectId(albumId);
-      Document albumDoc = ConnectionHelper.albumsCollection
-          .find(new Document("_id", objectId))
-          .first();
-      if (albumDoc != null) {
-        String artist = albumDoc.getString("artist");
-        String title = albumDoc.getString("title");
-        String year = albumDoc.getString("year");
-        return new AlbumInfo(albumId, artist, title, year);
-      } else {
-        return null;
+      return albumCache.get(albumId, this::findAlbumById);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Retrieves many albums at once, from the album cache when possible and with a single $in query for the rest.
+   *
+   * @param albumIds The unique identifiers of the albums to retrieve.
+   * @return The albums by ID in the order of the IDs, with null for the albums that are not found, or null if the
+   *     albums could not be retrieved.
+   */
+  @Override
+  public Map<String, AlbumInfo> getAlbumsByIds(Collection<String> albumIds) {
+    List<String> validIds = new ArrayList<>(albumIds.size());
+    for (String albumId : albumIds) {
+      if (ObjectId.isValid(albumId)) {
+        validIds.add(albumId);
       }
+    }
+    Map<String, AlbumInfo> cached;
+    try {
+      cached = albumCache.getAll(validIds, this::findAlbumsByIds);
     } catch (Exception e) {
       e.printStackTrace();
       return null;
     }
+    Map<String, AlbumInfo> albums = new LinkedHashMap<>();
+    for (String albumId : albumIds) {
+      albums.put(albumId, cached.get(albumId));
+    }
+    return albums;
   }
 
   /**
-   * Saves album information and an associated image to the database.
+   * Checks whether an album exists, from the album cache when possible and with an _id-only query otherwise.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return True if the album exists, false if it does not or cannot be checked.
+   */
+  @Override
+  public boolean albumExists(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return false;
+    }
+    try {
+      return albumCache.exists(albumId, id -> ConnectionHelper.albumsCollection
+          .find(new Document("_id", new ObjectId(id)))
+          .projection(ALBUM_ID_PROJECTION)
+          .limit(1)
+          .first() != null);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+  /**
+   * Gets the album cache shared by all connection managers.
+   *
+   * @return The album cache.
+   */
+  public static AlbumCache getAlbumCache() {
+    return albumCache;
+  }
+
+  /**
+   * Fetches album information from the database, projecting away the image.
+   *
+   * @param albumId The unique identifier of the album to retrieve.
+   * @return An AlbumInfo object representing the album's information, or null if the album is not found.
+   * @throws RuntimeException if there is an error while fetching the album.
+   */
+  private AlbumInfo findAlbumById(String albumId) {
+    ObjectId objectId = new ObjectId(albumId);
+    Document albumDoc = ConnectionHelper.albumsCollection
+        .find(new Document("_id", objectId))
+        .projection(ALBUM_INFO_PROJECTION)
+        .first();
+    if (albumDoc != null) {
+      String artist = albumDoc.getString("artist");
+      String title = albumDoc.getString("title");
+      String year = albumDoc.getString("year");
+      return new AlbumInfo(albumId, artist, title, year);
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Fetches many albums from the database with a single $in query on _id, projecting away the images.
+   *
+   * @param albumIds The unique identifiers of the albums to retrieve, all valid ObjectIds.
+   * @return The albums that were found by ID.
+   * @throws RuntimeException if there is an error while fetching the albums.
+   */
+  private Map<String, AlbumInfo> findAlbumsByIds(List<String> albumIds) {
+    // Keyed by ObjectId, so IDs that differ only in case all map back to the IDs that were asked for.
+    Map<ObjectId, List<String>> requestedIds = new HashMap<>();
+    for (String albumId : albumIds) {
+      requestedIds.computeIfAbsent(new ObjectId(albumId), id -> new ArrayList<>(1)).add(albumId);
+    }
+    Map<String, AlbumInfo> albums = new HashMap<>();
+    for (Document albumDoc : ConnectionHelper.albumsCollection
+        .find(Filters.in("_id", requestedIds.keySet()))
+        .projection(ALBUM_INFO_PROJECTION)) {
+      for (String albumId : requestedIds.get(albumDoc.getObjectId("_id"))) {
+        albums.put(albumId, new AlbumInfo(albumId, albumDoc.getString("artist"), albumDoc.getString("title"),
+            albumDoc.getString("year")));
+      }
+    }
+    return albums;
+  }
+
+  /**
+   * Saves album information and streams the associated image into the image store. The album document keeps only a
+   * reference to the image and its size, and the album is added to the album cache.
+   *
+   * @param albumInfo An AlbumInfo object containing information about the album to be saved.
+   * @param image The image content, read to its end but not closed.
+   * @return An ImageMetaData object containing the unique ID of the saved album and the size of the image, or null if
+   *     the album could not be saved.
+   */
+  @Override
+  public ImageMetaData saveAlbum(AlbumInfo albumInfo, InputStream image) {
+    StoredImage storedImage;
+    try {
+      storedImage = StoreFactory.getImageStore().save(image);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      return null;
+    }
+    return saveAlbum(albumInfo, storedImage);
+  }
+
+  /**
+   * Saves album information for an image that is already in the image store, and adds the album to the album cache.
+   * If the album cannot be saved, the image is deleted again.
    *
    * @param albumInfo An AlbumInfo object containing information about the album to be saved.
-   * @param image The binary image data to be associated with the album.
-   * @return An ImageMetaData object containing the unique ID of the saved album and the size of the image.
+   * @param storedImage The reference and size of the album's image.
+   * @return An ImageMetaData object containing the unique ID of the saved album and the size of the image, or null if
+   *     the album could not be saved.
+   */
+  @Override
+  public ImageMetaData saveAlbum(AlbumInfo albumInfo, StoredImage storedImage) {
+    Document document = albumDocument(albumInfo, storedImage);
+    try {
+      ConnectionHelper.albumsCollection.insertOne(document);
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+      deleteImageQuietly(storedImage.getImageId());
+      return null;
+    }
+    return cacheAlbum(document, albumInfo, storedImage);
+  }
+
+  /**
+   * Saves many albums whose images are already in the image store with a single unordered insertMany, and adds them
+   * to the album cache. An album that fails to insert does not stop the others; its image is deleted again.
+   *
+   * @param albumInfos   The albums to be saved.
+   * @param storedImages The reference and size of every album's image, in the same order as the albums.
+   * @return The ImageMetaData of every album in the same order as the albums, with null for the albums that could
+   *     not be saved.
+   */
+  @Override
+  public List<ImageMetaData> saveAlbums(List<AlbumInfo> albumInfos, List<StoredImage> storedImages) {
+    List<Document> documents = new ArrayList<>(albumInfos.size());
+    for (int i = 0; i < albumInfos.size(); i++) {
+      documents.add(albumDocument(albumInfos.get(i), storedImages.get(i)));
+    }
+    boolean[] failed = new boolean[documents.size()];
+    if (!documents.isEmpty()) {
+      try {
+        ConnectionHelper.albumsCollection.insertMany(documents, new InsertManyOptions().ordered(false));
+      } catch (MongoBulkWriteException e) {
+        e.printStackTrace();
+        for (BulkWriteError error : e.getWriteErrors()) {
+          failed[error.getIndex()] = true;
+        }
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+        Arrays.fill(failed, true);
+      }
+    }
+    List<ImageMetaData> saved = new ArrayList<>(documents.size());
+    for (int i = 0; i < documents.size(); i++) {
+      if (failed[i]) {
+        deleteImageQuietly(storedImages.get(i).getImageId());
+        saved.add(null);
+      } else {
+        saved.add(cacheAlbum(documents.get(i), albumInfos.get(i), storedImages.get(i)));
+      }
+    }
+    return saved;
+  }
+
+  /**
+   * Creates the document of a new album with a new ID.
+   *
+   * @param albumInfo   The album information.
+   * @param storedImage The reference and size of the album's image.
+   * @return The album document.
    */
-  public ImageMetaData saveAlbum(AlbumInfo albumInfo, byte[] image) {
-    ObjectId id = new ObjectId();
-    Document document = new Document("_id", id)
+  private static Document albumDocument(AlbumInfo albumInfo, StoredImage storedImage) {
+    return new Document("_id", new ObjectId())
         .append("artist", albumInfo.getArtist())
         .append("title", albumInfo.getTitle())
         .append("year", albumInfo.getYear())
-        .append("image", image);
-    InsertOneResult result = ConnectionHelper.albumsCollection.insertOne(document);
+        .append("imageId", storedImage.getImageId())
+        .append("imageSize", storedImage.getSize());
+  }
+
+  /**
+   * Adds a saved album to the album cache.
+   *
+   * @param document    The saved album document.
+   * @param albumInfo   The album information.
+   * @param storedImage The reference and size of the album's image.
+   * @return The ImageMetaData of the saved album.
+   */
+  private static ImageMetaData cacheAlbum(Document document, AlbumInfo albumInfo, StoredImage storedImage) {
+    String id = document.getObjectId("_id").toString();
+    albumCache.put(id, new AlbumInfo(id, albumInfo.getArtist(), albumInfo.getTitle(), albumInfo.getYear()));
+    return new ImageMetaData(id, storedImage.getSize());
+  }
 
-    return new ImageMetaData(id.toString(), image.length);
+  /**
+   * Deletes an image from the image store, logging instead of throwing on failure.
+   *
+   * @param imageId The reference of the image.
+   */
+  @Override
+  public void deleteImageQuietly(String imageId) {
+    try {
+      StoreFactory.getImageStore().delete(imageId);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+    }
   }
 
   /**
-   * Updates the reviews for an album based on the received message parts.
+   * Reads the stored like and dislike counts of an album.
    *
-   * <p>This method increments the "likes" field of the album's review document in the MongoDB collection.
-   * If the document does not exist, it is created with the specified album ID and likes value.
+   * @param albumId The unique identifier of the album.
+   * @return The counts, zero if the album has no reviews, or null if they cannot be read.
+   */
+  @Override
+  public ReviewCounts getReviewCounts(String albumId) {
+    if (!ObjectId.isValid(albumId)) {
+      return new ReviewCounts(0, 0);
+    }
+    try {
+      Document reviewDoc = reviewCountsCollection().find(reviewFilter(new ObjectId(albumId)))
+          .projection(REVIEW_COUNTS_PROJECTION)
+          .first();
+      return toReviewCounts(reviewDoc);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Converts a review document to review counts.
+   *
+   * @param reviewDoc The review document, or null if the album has no reviews.
+   * @return The counts.
+   */
+  static ReviewCounts toReviewCounts(Document reviewDoc) {
+    if (reviewDoc == null) {
+      return new ReviewCounts(0, 0);
+    }
+    return new ReviewCounts(toLong(reviewDoc.get("likes")), toLong(reviewDoc.get("dislikes")));
+  }
+
+  private static long toLong(Object value) {
+    return value instanceof Number ? ((Number) value).longValue() : 0;
+  }
+
+  /**
+   * Sends review updates as one unordered bulk write.
+   *
+   * @param updates  The updates.
+   * @param albumIds The album ID of every update, in the same order.
+   * @throws PartialWriteException If some of the updates failed; the others have been applied.
+   */
+  private static void bulkWriteReviews(List<WriteModel<Document>> updates, List<String> albumIds) {
+    if (updates.isEmpty()) {
+      return;
+    }
+    try {
+      reviewCountsCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    } catch (MongoBulkWriteException e) {
+      if (e.getWriteErrors().isEmpty()) {
+        throw e;
+      }
+      Set<String> failed = new HashSet<>();
+      for (BulkWriteError error : e.getWriteErrors()) {
+        failed.add(albumIds.get(error.getIndex()));
+      }
+      throw new PartialWriteException(failed, e);
+    }
+  }
+
+  /**
+   * Creates the filter that selects the review counts of an album: its album document when the counts are co-located
+   * with the album, and otherwise its review document, which is keyed by the album ID as a binary ObjectId.
+   *
+   * @param albumId The album ID.
+   * @return The filter.
+   */
+  static Bson reviewFilter(ObjectId albumId) {
+    return new Document(REVIEWS_ON_ALBUM ? "_id" : "albumID", albumId);
+  }
+
+  /**
+   * Gets the collection that holds the review counts.
+   *
+   * @return The albums collection when the counts are co-located with the albums, the reviews collection otherwise.
+   */
+  private static MongoCollection<Document> reviewCountsCollection() {
+    return REVIEWS_ON_ALBUM ? ConnectionHelper.albumsCollection : ConnectionHelper.reviewsCollection;
+  }
+
+  /**
+   * Applies coalesced like and dislike deltas for many albums with a single unordered bulk write. Each update is an
+   * index hit on the unique review key. Album IDs that are not valid ObjectIds cannot belong to an album and are
+   * skipped. If some of the updates fail, the others are still applied and the failed albums are reported.
+   *
+   * @param deltas The likes and dislikes to add, keyed by album ID.
+   * @return The number of write operations sent to the database.
+   */
+  @Override
+  public int bulkUpdateReviews(Map<String, ReviewCounts> deltas) {
+    List<WriteModel<Document>> updates = new ArrayList<>(deltas.size());
+    List<String> albumIds = new ArrayList<>(deltas.size());
+    UpdateOptions upsert = new UpdateOptions().upsert(!REVIEWS_ON_ALBUM);
+    for (Map.Entry<String, ReviewCounts> entry : deltas.entrySet()) {
+      if (!ObjectId.isValid(entry.getKey())) {
+        continue;
+      }
+      Document increments = new Document();
+      if (entry.getValue().getLikes() != 0) {
+        increments.append("likes", entry.getValue().getLikes());
+      }
+      if (entry.getValue().getDislikes() != 0) {
+        increments.append("dislikes", entry.getValue().getDislikes());
+      }
+      if (!increments.isEmpty()) {
+        updates.add(new UpdateOneModel<>(reviewFilter(new ObjectId(entry.getKey())), new Document("$inc", increments),
+            upsert));
+        albumIds.add(entry.getKey());
+      }
+    }
+    bulkWriteReviews(updates, albumIds);
+    return updates.size();
+  }
+
+  /**
+   * Applies the cumulative counts of one writer with a single unordered bulk write of pipeline updates. Every review
+   * document keeps the cumulative counts it has applied per writer under "applied.&lt;writerId&gt;", and an update
+   * only adds the difference to the counters, so repeating it is a no-op. Album IDs that are not valid ObjectIds are
+   * skipped.
+   *
+   * @param writerId The unique ID of the writer, made of letters and digits only.
+   * @param counts   The cumulative likes and dislikes of the writer, keyed by album ID.
+   * @return The number of write operations sent to the database.
+   * @throws IllegalArgumentException If the writer ID is not made of letters and digits.
+   */
+  @Override
+  public int bulkApplyReviews(String writerId, Map<String, ReviewCounts> counts) {
+    if (!writerId.matches("[A-Za-z0-9]+")) {
+      throw new IllegalArgumentException("Invalid review writer ID " + writerId);
+    }
+    String applied = "applied." + writerId;
+    List<WriteModel<Document>> updates = new ArrayList<>(counts.size());
+    List<String> albumIds = new ArrayList<>(counts.size());
+    UpdateOptions upsert = new UpdateOptions().upsert(!REVIEWS_ON_ALBUM);
+    for (Map.Entry<String, ReviewCounts> entry : counts.entrySet()) {
+      if (!ObjectId.isValid(entry.getKey())) {
+        continue;
+      }
+      Document appliedLikes = new Document("$ifNull", Arrays.asList("$" + applied + ".likes", 0L));
+      Document appliedDislikes = new Document("$ifNull", Arrays.asList("$" + applied + ".dislikes", 0L));
+      long likes = entry.getValue().getLikes();
+      long dislikes = entry.getValue().getDislikes();
+      Document set = new Document("likes", addUnapplied("$likes", likes, appliedLikes))
+          .append("dislikes", addUnapplied("$dislikes", dislikes, appliedDislikes))
+          .append(applied, new Document("likes", new Document("$max", Arrays.asList(likes, appliedLikes)))
+              .append("dislikes", new Document("$max", Arrays.asList(dislikes, appliedDislikes))));
+      updates.add(new UpdateOneModel<>(reviewFilter(new ObjectId(entry.getKey())),
+          List.of(new Document("$set", set)), upsert));
+      albumIds.add(entry.getKey());
+    }
+    bulkWriteReviews(updates, albumIds);
+    return updates.size();
+  }
+
+  /**
+   * Creates the aggregation expression that adds the unapplied part of a cumulative count to a counter.
    *
-   * @param messageParts An array containing the album ID at index 0 and the likes value at index 1.
-   * @throws NumberFormatException If the likes value in the message parts is not a valid integer.
+   * @param field      The counter field reference.
+   * @param cumulative The cumulative count of the writer.
+   * @param applied    The expression of the count already applied for the writer.
+   * @return The expression of the new counter value.
    */
-  public void updateReviews(String[] messageParts) {
-    String id = messageParts[0];
-    int value = Integer.parseInt(messageParts[1]);
-    Document updateDocument = new Document("$inc", new Document("likes", value));
-    ConnectionHelper.reviewsCollection.updateOne(new Document("albumID", id), updateDocument, new UpdateOptions().upsert(true));
+  private static Document addUnapplied(String field, long cumulative, Document applied) {
+    return new Document("$add", Arrays.asList(new Document("$ifNull", Arrays.asList(field, 0L)),
+        new Document("$max", Arrays.asList(0L, new Document("$subtract", Arrays.asList(cumulative, applied))))));
   }
-}
\ No newline at end of file
+}
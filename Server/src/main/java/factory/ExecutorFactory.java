@@ -0,0 +1,51 @@
+package factory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ExecutorFactory class creates virtual thread executors for blocking work. Virtual threads are used when the
+ * "threads.virtual" setting is true and the JVM supports them (Java 21 or newer). The server is compiled for Java 17,
+ * so they are looked up reflectively.
+ * @author ambikakabra
+ */
+public final class ExecutorFactory {
+  private static final boolean VIRTUAL_THREADS_REQUESTED = ServerConfig.getBoolean("threads.virtual", false);
+  private static final boolean VIRTUAL_THREADS_SUPPORTED = Runtime.version().feature() >= 21;
+
+  // Private constructor to prevent instantiation
+  private ExecutorFactory() { }
+
+  /**
+   * Checks whether virtual threads are requested with the "threads.virtual" setting.
+   *
+   * @return True if virtual threads are requested, whether or not the running JVM supports them.
+   */
+  public static boolean isVirtualThreadsRequested() {
+    return VIRTUAL_THREADS_REQUESTED;
+  }
+
+  /**
+   * Checks whether virtual threads are requested and supported by the running JVM.
+   *
+   * @return True if executors created by this factory use virtual threads.
+   */
+  public static boolean useVirtualThreads() {
+    return VIRTUAL_THREADS_REQUESTED && VIRTUAL_THREADS_SUPPORTED;
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task. Callers check {@link #useVirtualThreads()}
+   * first.
+   *
+   * @return The virtual thread executor.
+   * @throws IllegalStateException If the JVM does not support virtual threads.
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Virtual threads are not available", e);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package factory;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MongoClientFactory class builds MongoDB client settings from the server configuration, so the connection pool
+ * can be sized against the servlet container's thread count.
+ *
+ * <p>Settings: {@code mongodb.uri}, {@code mongodb.pool.minSize}, {@code mongodb.pool.maxSize} (of the synchronous
+ * client; the reactive client has its own pool, sized by {@code mongodb.async.pool.maxSize}),
+ * {@code mongodb.pool.maxWaitTimeMs}, {@code mongodb.pool.maxIdleTimeMs}, {@code mongodb.compressors} (a comma
+ * separated list of zstd, snappy and zlib), {@code mongodb.readConcern} and {@code mongodb.writeConcern}.
+ * @author ambikakabra
+ */
+public final class MongoClientFactory {
+  private static final String DEFAULT_URI =
+      "mongodb://localhost:27017/?directConnection=true&serverSelectionTimeoutMS=2000&appName=mongosh+2.0.2";
+
+  // Private constructor to prevent instantiation
+  private MongoClientFactory() { }
+
+  /**
+   * Creates a synchronous MongoDB client.
+   *
+   * @param stats The listener that collects pool and command statistics.
+   * @return The new client.
+   */
+  public static MongoClient create(MongoPoolStats stats) {
+    return MongoClients.create(createSettings(stats));
+  }
+
+  /**
+   * Builds the settings of the synchronous client from the server configuration.
+   *
+   * @param stats The listener that collects pool and command statistics.
+   * @return The client settings.
+   * @throws IllegalArgumentException If a compressor, read concern or write concern is unknown.
+   */
+  public static MongoClientSettings createSettings(MongoPoolStats stats) {
+    return createSettings(stats, ServerConfig.getInt("mongodb.pool.maxSize", 100));
+  }
+
+  /**
+   * Builds client settings from the server configuration with a given connection pool size. Every client has its own
+   * pool, so the connections a process may open are the sum of the pool sizes of its clients.
+   *
+   * @param stats       The listener that collects pool and command statistics.
+   * @param maxPoolSize The maximum number of connections of the client's pool.
+   * @return The client settings.
+   * @throws IllegalArgumentException If a compressor, read concern or write concern is unknown.
+   */
+  public static MongoClientSettings createSettings(MongoPoolStats stats, int maxPoolSize) {
+    MongoClientSettings.Builder builder = MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(ServerConfig.getString("mongodb.uri", DEFAULT_URI)))
+        .applyToConnectionPoolSettings(pool -> pool
+            .minSize(ServerConfig.getInt("mongodb.pool.minSize", 0))
+            .maxSize(maxPoolSize)
+            .maxWaitTime(ServerConfig.getLong("mongodb.pool.maxWaitTimeMs", 2000), TimeUnit.MILLISECONDS)
+            .maxConnectionIdleTime(ServerConfig.getLong("mongodb.pool.maxIdleTimeMs", 60000), TimeUnit.MILLISECONDS)
+            .addConnectionPoolListener(stats))
+        .addCommandListener(stats);
+
+    List<MongoCompressor> compressors = parseCompressors(ServerConfig.getString("mongodb.compressors", ""));
+    if (!compressors.isEmpty()) {
+      builder.compressorList(compressors);
+    }
+    String readConcern = ServerConfig.getString("mongodb.readConcern", null);
+    if (readConcern != null) {
+      builder.readConcern(new ReadConcern(ReadConcernLevel.fromString(readConcern)));
+    }
+    String writeConcern = ServerConfig.getString("mongodb.writeConcern", null);
+    if (writeConcern != null) {
+      WriteConcern concern = WriteConcern.valueOf(writeConcern);
+      if (concern == null) {
+        throw new IllegalArgumentException("Unknown write concern: " + writeConcern);
+      }
+      builder.writeConcern(concern);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Parses a comma separated list of compressor names.
+   *
+   * @param names The compressor names, in order of preference.
+   * @return The compressors.
+   * @throws IllegalArgumentException If a compressor name is unknown.
+   */
+  private static List<MongoCompressor> parseCompressors(String names) {
+    List<MongoCompressor> compressors = new ArrayList<>();
+    for (String name : names.split(",")) {
+      switch (name.trim().toLowerCase()) {
+        case "":
+          break;
+        case "zstd":
+          compressors.add(MongoCompressor.createZstdCompressor());
+          break;
+        case "snappy":
+          compressors.add(MongoCompressor.createSnappyCompressor());
+          break;
+        case "zlib":
+          compressors.add(MongoCompressor.createZlibCompressor());
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown compressor: " + name);
+      }
+    }
+    return compressors;
+  }
+}
@@ -0,0 +1,187 @@
+package factory;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects connection pool and command statistics of a MongoDB client. The check-out events of the driver carry no
+ * operation ID, and the reactive client starts and completes a check-out on different threads, so the start times of
+ * pending check-outs are queued per server and every completed check-out is matched with the oldest one. The pool
+ * serves waiters in order, and even where it does not, the matching only shuffles the waits between check-outs: the
+ * total, and therefore the mean, wait time is exact, while the maximum is an estimate.
+ * @author ambikakabra
+ */
+public class MongoPoolStats implements ConnectionPoolListener, CommandListener {
+  private final Map<ServerId, Queue<Long>> checkOutStartNanos = new ConcurrentHashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger checkedOut = new AtomicInteger();
+  private final LongAdder checkOuts = new LongAdder();
+  private final LongAdder checkOutFailures = new LongAdder();
+  private final LongAdder checkOutWaitNanos = new LongAdder();
+  private final LongAccumulator maxCheckOutWaitNanos = new LongAccumulator(Math::max, 0);
+  private final LongAdder commands = new LongAdder();
+  private final LongAdder failedCommands = new LongAdder();
+  private final LongAdder commandNanos = new LongAdder();
+
+  @Override
+  public void connectionCreated(ConnectionCreatedEvent event) {
+    connections.incrementAndGet();
+  }
+
+  @Override
+  public void connectionClosed(ConnectionClosedEvent event) {
+    connections.decrementAndGet();
+  }
+
+  @Override
+  public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+    checkOutStartNanos.computeIfAbsent(event.getServerId(), serverId -> new ConcurrentLinkedQueue<>())
+        .add(System.nanoTime());
+  }
+
+  @Override
+  public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+    checkedOut.incrementAndGet();
+    checkOuts.increment();
+    recordWait(event.getConnectionId().getServerId());
+  }
+
+  @Override
+  public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+    checkOutFailures.increment();
+    recordWait(event.getServerId());
+  }
+
+  @Override
+  public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+    checkedOut.decrementAndGet();
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    commands.increment();
+    commandNanos.add(event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    commands.increment();
+    failedCommands.increment();
+    commandNanos.add(event.getElapsedTime(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Gets the number of open connections in the pool.
+   *
+   * @return The number of connections.
+   */
+  public int getConnections() {
+    return connections.get();
+  }
+
+  /**
+   * Gets the number of connections currently checked out of the pool.
+   *
+   * @return The number of checked-out connections.
+   */
+  public int getCheckedOut() {
+    return checkedOut.get();
+  }
+
+  /**
+   * Gets the total number of successful check-outs.
+   *
+   * @return The check-out count.
+   */
+  public long getCheckOuts() {
+    return checkOuts.sum();
+  }
+
+  /**
+   * Gets the number of check-outs that failed, for example because the wait queue timed out.
+   *
+   * @return The failed check-out count.
+   */
+  public long getCheckOutFailures() {
+    return checkOutFailures.sum();
+  }
+
+  /**
+   * Gets the mean time spent waiting for a connection.
+   *
+   * @return The mean wait time in milliseconds.
+   */
+  public double getMeanCheckOutWaitMs() {
+    long count = checkOuts.sum() + checkOutFailures.sum();
+    return count == 0 ? 0 : checkOutWaitNanos.sum() / 1e6 / count;
+  }
+
+  /**
+   * Gets the longest time spent waiting for a connection.
+   *
+   * @return The maximum wait time in milliseconds.
+   */
+  public double getMaxCheckOutWaitMs() {
+    return maxCheckOutWaitNanos.get() / 1e6;
+  }
+
+  /**
+   * Gets the total number of commands sent to the server.
+   *
+   * @return The command count.
+   */
+  public long getCommands() {
+    return commands.sum();
+  }
+
+  /**
+   * Gets the number of commands that failed.
+   *
+   * @return The failed command count.
+   */
+  public long getFailedCommands() {
+    return failedCommands.sum();
+  }
+
+  /**
+   * Gets the mean command round-trip time.
+   *
+   * @return The mean command time in milliseconds.
+   */
+  public double getMeanCommandMs() {
+    long count = commands.sum();
+    return count == 0 ? 0 : commandNanos.sum() / 1e6 / count;
+  }
+
+  /**
+   * Records the time since the oldest pending check-out from a server started.
+   *
+   * @param serverId The server the connection was checked out from.
+   */
+  private void recordWait(ServerId serverId) {
+    Queue<Long> starts = checkOutStartNanos.get(serverId);
+    Long start = starts == null ? null : starts.poll();
+    if (start != null) {
+      long waited = System.nanoTime() - start;
+      checkOutWaitNanos.add(waited);
+      maxCheckOutWaitNanos.accumulate(waited);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package factory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * Manages the schema of the "reviews" collection. Review documents are keyed by the album ID as a binary ObjectId
+ * under a unique index, so every review upsert is an index hit and concurrent first reviews of an album cannot create
+ * two documents: the server retries the upsert that loses the race as an update of the winner's document.
+ *
+ * <p>The index is ensured on every startup. Review documents written by earlier versions, which keyed them by the
+ * album ID as a hex string and could hold several documents per album, must be migrated once before the index can be
+ * built. The migration is an explicit step, run with {@link #main(String[])} while the servers may keep writing:
+ * string keys are converted in place, and every duplicate document is removed atomically before its counts are added
+ * to the document that is kept, so no concurrent increment is lost. When the review counts are co-located on the
+ * album documents, they are keyed by the album's own _id and nothing needs to be created.
+ *
+ * @author ambikakabra
+ */
+public final class MongoSchema {
+  /** The name of the unique index on the review key. */
+  static final String REVIEW_KEY_INDEX = "albumID_unique";
+
+  // Private constructor to prevent instantiation
+  private MongoSchema() { }
+
+  /**
+   * Migrates the review documents of earlier versions and creates the unique review key index.
+   *
+   * @param args The command line arguments, which are not used.
+   */
+  public static void main(String[] args) {
+    try {
+      if (ConnectionManager.REVIEWS_ON_ALBUM) {
+        System.out.println("Review counts are co-located on the albums; there is nothing to migrate");
+        return;
+      }
+      MongoCollection<Document> reviews = ConnectionHelper.reviewsCollection;
+      convertStringKeys(reviews);
+      mergeDuplicates(reviews);
+      createReviewKeyIndex(reviews);
+      System.out.println("Created the " + REVIEW_KEY_INDEX + " index");
+    } catch (MongoException e) {
+      e.printStackTrace();
+      System.exit(1);
+    } finally {
+      ConnectionHelper.close();
+    }
+  }
+
+  /**
+   * Creates the unique review key index, unless disabled with {@code mongodb.ensureIndexes=false}. Creating an index
+   * that already exists is a no-op, so this runs on every startup. Failures are logged and do not prevent the server
+   * from starting; the index cannot be built before the review documents of earlier versions have been migrated.
+   */
+  public static void ensureIndexes() {
+    if (!ServerConfig.getBoolean("mongodb.ensureIndexes", true) || ConnectionManager.REVIEWS_ON_ALBUM) {
+      return;
+    }
+    try {
+      createReviewKeyIndex(ConnectionHelper.reviewsCollection);
+    } catch (MongoException e) {
+      System.err.println("Cannot create the " + REVIEW_KEY_INDEX + " index; migrate the reviews with "
+          + MongoSchema.class.getName());
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Creates the unique index on the review key.
+   *
+   * @param reviews The reviews collection.
+   */
+  private static void createReviewKeyIndex(MongoCollection<Document> reviews) {
+    reviews.createIndex(Indexes.ascending("albumID"), new IndexOptions().name(REVIEW_KEY_INDEX).unique(true));
+  }
+
+  /**
+   * Converts hex string review keys to ObjectIds on the server. Keys that are not valid ObjectIds are left unchanged.
+   *
+   * @param reviews The reviews collection.
+   */
+  private static void convertStringKeys(MongoCollection<Document> reviews) {
+    long converted = reviews.updateMany(Filters.type("albumID", "string"), List.of(Updates.set("albumID",
+        new Document("$convert", new Document("input", "$albumID").append("to", "objectId")
+            .append("onError", "$albumID"))))).getModifiedCount();
+    if (converted > 0) {
+      System.out.println("Converted " + converted + " review keys to ObjectIds");
+    }
+  }
+
+  /**
+   * Merges review documents that share an album into the first of them, so the unique index can be built. Every
+   * other document is deleted first, and the counts it had when it was deleted are then added to the kept document,
+   * together with its applied journal counts, so increments that land during the merge are kept.
+   *
+   * @param reviews The reviews collection.
+   */
+  private static void mergeDuplicates(MongoCollection<Document> reviews) {
+    List<Document> duplicates = reviews.aggregate(Arrays.asList(
+        Aggregates.group("$albumID",
+            Accumulators.push("ids", "$_id"),
+            Accumulators.sum("count", 1)),
+        Aggregates.match(Filters.gt("count", 1)))).allowDiskUse(true).into(new ArrayList<>());
+    for (Document duplicate : duplicates) {
+      List<Object> ids = duplicate.getList("ids", Object.class);
+      for (Object id : ids.subList(1, ids.size())) {
+        Document deleted = reviews.findOneAndDelete(Filters.eq("_id", id));
+        if (deleted != null) {
+          reviews.updateOne(Filters.eq("_id", ids.get(0)), mergeUpdate(deleted));
+        }
+      }
+    }
+    if (!duplicates.isEmpty()) {
+      System.out.println("Merged the duplicate review documents of " + duplicates.size() + " albums");
+    }
+  }
+
+  /**
+   * Creates the update that adds the counts of a deleted duplicate to the kept document.
+   *
+   * @param deleted The deleted duplicate.
+   * @return The update.
+   */
+  private static Bson mergeUpdate(Document deleted) {
+    List<Bson> updates = new ArrayList<>();
+    updates.add(Updates.inc("likes", toLong(deleted.get("likes"))));
+    updates.add(Updates.inc("dislikes", toLong(deleted.get("dislikes"))));
+    Document applied = deleted.get("applied", Document.class);
+    if (applied != null) {
+      applied.forEach((writerId, counts) -> {
+        if (counts instanceof Document) {
+          updates.add(Updates.max("applied." + writerId + ".likes", toLong(((Document) counts).get("likes"))));
+          updates.add(Updates.max("applied." + writerId + ".dislikes", toLong(((Document) counts).get("dislikes"))));
+        }
+      });
+    }
+    return Updates.combine(updates);
+  }
+
+  private static long toLong(Object value) {
+    return value instanceof Number ? ((Number) value).longValue() : 0;
+  }
+}
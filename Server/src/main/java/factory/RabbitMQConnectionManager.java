@@ -5,6 +5,9 @@ import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
 import java.io.IOException;
+import org.bson.types.ObjectId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -16,6 +19,12 @@ public class RabbitMQConnectionManager {
   /** The default queue name for RabbitMQ communication. */
   private static final String QUEUE_NAME = "HW3";
 
+  /** The number of review queues that albums are partitioned across. */
+  private static final int PARTITIONS = Math.max(1, ServerConfig.getInt("rabbitmq.review.partitions", 1));
+
+  /** The executor that dispatches consumer deliveries on virtual threads, or null to use the client's own pool. */
+  private static final ExecutorService deliveryExecutor = createDeliveryExecutor();
+
   /** The RabbitMQ connection factory. */
   private static final ConnectionFactory factory = createFactory();
 
@@ -31,11 +40,33 @@ public class RabbitMQConnectionManager {
   /** The default RabbitMQ server port number. */
   private static final int HOST_PORT = 5672;
 
+  /** The pool of publisher channels shared by request threads. */
+  private static final ChannelPool channelPool = new ChannelPool(
+      ServerConfig.getInt("rabbitmq.pool.size", 50),
+      ServerConfig.getLong("rabbitmq.pool.borrowTimeoutMs", 1000),
+      ServerConfig.getBoolean("rabbitmq.publisher.confirms", false));
+
   // Private constructor to prevent instantiation
   private RabbitMQConnectionManager() { }
 
   /**
-   * Creates and configures a new RabbitMQ connection factory.
+   * Creates the executor that dispatches consumer deliveries on virtual threads when "threads.virtual" is enabled.
+   *
+   * @return The virtual thread executor, or null if virtual threads are not enabled or not supported.
+   */
+  private static ExecutorService createDeliveryExecutor() {
+    if (ExecutorFactory.useVirtualThreads()) {
+      return ExecutorFactory.newVirtualThreadExecutor();
+    }
+    if (ExecutorFactory.isVirtualThreadsRequested()) {
+      System.err.println("threads.virtual requires Java 21 or newer; using platform threads");
+    }
+    return null;
+  }
+
+  /**
+   * Creates and configures a new RabbitMQ connection factory. With "threads.virtual" enabled, consumer deliveries are
+   * dispatched on virtual threads.
    *
    * @return The configured RabbitMQ connection factory.
    */
@@ -43,6 +74,10 @@ public class RabbitMQConnectionManager {
     ConnectionFactory factory = new ConnectionFactory();
     factory.setHost(HOST_NAME);
     factory.setPort(HOST_PORT);
+    if (deliveryExecutor != null) {
+      // Consumer callbacks are dispatched on virtual threads instead of the client's platform thread pool.
+      factory.setSharedExecutor(deliveryExecutor);
+    }
     return factory;
   }
 
@@ -85,7 +120,7 @@ public class RabbitMQConnectionManager {
    * @return The RabbitMQ connection.
    * @throws TimeoutException If a timeout occurs during connection creation.
    */
-  public static Connection getConnection() throws TimeoutException {
+  public static synchronized Connection getConnection() throws TimeoutException {
     if (connection == null || !connection.isOpen()) {
       connection = createConnection();
     }
@@ -101,13 +136,73 @@ public class RabbitMQConnectionManager {
     return QUEUE_NAME;
   }
 
+  /**
+   * Gets the number of review queue partitions.
+   *
+   * @return The partition count, at least 1.
+   */
+  public static int getPartitionCount() {
+    return PARTITIONS;
+  }
+
+  /**
+   * Gets the name of the review queue of a partition. With a single partition this is the default queue name, so an
+   * unpartitioned deployment keeps using its existing queue.
+   *
+   * @param partition The partition, between 0 and {@link #getPartitionCount()} - 1.
+   * @return The RabbitMQ queue name.
+   */
+  public static String getQueueName(int partition) {
+    return PARTITIONS == 1 ? QUEUE_NAME : QUEUE_NAME + "." + partition;
+  }
+
+  /**
+   * Gets the partition that owns an album. All reviews of an album go to the same queue, so they are counted by a
+   * single consumer.
+   *
+   * @param albumId The album ID.
+   * @return The partition, between 0 and {@link #getPartitionCount()} - 1.
+   */
+  public static int partitionOf(ObjectId albumId) {
+    int hash = albumId.hashCode();
+    return Math.floorMod(hash ^ (hash >>> 16), PARTITIONS);
+  }
+
+  /**
+   * Gets the name of the review queue that owns an album.
+   *
+   * @param albumId The album ID.
+   * @return The RabbitMQ queue name.
+   */
+  public static String getQueueName(ObjectId albumId) {
+    return getQueueName(partitionOf(albumId));
+  }
+
+  /**
+   * Declares the review queues of all partitions, so reviews published before their consumer has started are kept.
+   *
+   * @throws TimeoutException     If no channel became available in time, or the connection could not be created.
+   * @throws InterruptedException If the thread is interrupted while waiting for a channel.
+   * @throws IOException          If a queue cannot be declared.
+   */
+  public static void declareReviewQueues() throws TimeoutException, InterruptedException, IOException {
+    Channel channel = channelPool.borrow();
+    try {
+      for (int partition = 0; partition < PARTITIONS; partition++) {
+        channel.queueDeclare(getQueueName(partition), false, false, false, null);
+      }
+    } finally {
+      channelPool.release(channel);
+    }
+  }
+
   /**
    * Gets the current RabbitMQ channel. Creates a new one if none exists or if the existing one is closed.
    *
    * @return The RabbitMQ channel.
    * @throws RuntimeException If an error occurs during channel creation.
    */
-  public static Channel getChannel() {
+  public static synchronized Channel getChannel() {
     if (channel == null || !channel.isOpen()) {
       try {
         channel = getConnection().createChannel();
@@ -117,4 +212,88 @@ public class RabbitMQConnectionManager {
     }
     return channel;
   }
-}
\ No newline at end of file
+
+  /**
+   * Borrows a channel from the publisher pool for exclusive use by the calling thread. The channel must be handed
+   * back with {@link #returnChannel(Channel)}, typically in a finally block.
+   *
+   * @return An open RabbitMQ channel.
+   * @throws TimeoutException     If no channel became available in time, or the connection could not be created.
+   * @throws InterruptedException If the thread is interrupted while waiting for a channel.
+   * @throws IOException          If a new channel cannot be created.
+   */
+  public static Channel borrowChannel() throws TimeoutException, InterruptedException, IOException {
+    return channelPool.borrow();
+  }
+
+  /**
+   * Returns a channel obtained from {@link #borrowChannel()} to the publisher pool.
+   *
+   * @param channel The borrowed channel.
+   */
+  public static void returnChannel(Channel channel) {
+    channelPool.release(channel);
+  }
+
+  /**
+   * Publishes a message to a queue on a pooled channel. With publisher confirms enabled, the returned future completes
+   * once the broker has confirmed the message; otherwise it is already complete when this method returns.
+   *
+   * @param queueName The name of the queue to publish to.
+   * @param body      The message body.
+   * @return A future that completes when the message is confirmed, or fails when the broker rejects it.
+   * @throws TimeoutException     If no channel became available in time, or the connection could not be created.
+   * @throws InterruptedException If the thread is interrupted while waiting for a channel.
+   * @throws IOException          If the message cannot be published.
+   */
+  public static CompletableFuture<Void> publish(String queueName, byte[] body)
+      throws TimeoutException, InterruptedException, IOException {
+    Channel channel = channelPool.borrow();
+    try {
+      ConfirmTracker tracker = channelPool.getConfirmTracker(channel);
+      if (tracker == null) {
+        channel.basicPublish("", queueName, null, body);
+        return CompletableFuture.completedFuture(null);
+      }
+      long sequenceNumber = channel.getNextPublishSeqNo();
+      CompletableFuture<Void> confirmation = tracker.track(sequenceNumber);
+      try {
+        channel.basicPublish("", queueName, null, body);
+      } catch (IOException | RuntimeException e) {
+        tracker.fail(sequenceNumber, e);
+        throw e;
+      }
+      return confirmation;
+    } finally {
+      channelPool.release(channel);
+    }
+  }
+
+  /**
+   * Closes the shared connection, and with it the channels of the publisher pool, and shuts down the delivery
+   * executor. Connections obtained from {@link #getNewConnection()} are closed by their owners.
+   */
+  public static synchronized void close() {
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace();
+      }
+      connection = null;
+      channel = null;
+    }
+    if (deliveryExecutor != null) {
+      deliveryExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Gets the pool of publisher channels.
+   *
+   * @return The publisher channel pool.
+   */
+  public static ChannelPool getChannelPool() {
+    return channelPool;
+  }
+}
@@ -0,0 +1,94 @@
+package factory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ServerConfig class resolves tunable server settings. A setting such as {@code review.flush.intervalMs}
+ * is read from the JVM system property of the same name first, then from the servlet context parameters registered
+ * with {@link #putAll(Map)}, then from the environment variable {@code REVIEW_FLUSH_INTERVALMS}, and finally falls
+ * back to the supplied default.
+ * @author ambikakabra
+ */
+public final class ServerConfig {
+  private static final Map<String, String> contextSettings = new ConcurrentHashMap<>();
+
+  // Private constructor to prevent instantiation
+  private ServerConfig() { }
+
+  /**
+   * Gets a string setting.
+   *
+   * @param name         The dotted name of the setting.
+   * @param defaultValue The value to use when the setting is absent.
+   * @return The configured value, or the default value.
+   */
+  public static String getString(String name, String defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null) {
+      value = contextSettings.get(name);
+    }
+    if (value == null) {
+      value = System.getenv(toEnvName(name));
+    }
+    return value == null || value.isBlank() ? defaultValue : value.trim();
+  }
+
+  /**
+   * Registers settings from a deployment descriptor, such as the servlet context init parameters. They must be
+   * registered before the components that read them are initialized.
+   *
+   * @param settings The settings keyed by dotted name.
+   */
+  public static void putAll(Map<String, String> settings) {
+    contextSettings.putAll(settings);
+  }
+
+  /**
+   * Gets an integer setting.
+   *
+   * @param name         The dotted name of the setting.
+   * @param defaultValue The value to use when the setting is absent.
+   * @return The configured value, or the default value.
+   * @throws NumberFormatException If the configured value is not a valid integer.
+   */
+  public static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  /**
+   * Gets a long setting.
+   *
+   * @param name         The dotted name of the setting.
+   * @param defaultValue The value to use when the setting is absent.
+   * @return The configured value, or the default value.
+   * @throws NumberFormatException If the configured value is not a valid long.
+   */
+  public static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+
+  /**
+   * Gets a boolean setting.
+   *
+   * @param name         The dotted name of the setting.
+   * @param defaultValue The value to use when the setting is absent.
+   * @return The configured value, or the default value.
+   */
+  public static boolean getBoolean(String name, boolean defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+
+  /**
+   * Converts a dotted setting name to its environment variable form.
+   *
+   * @param name The dotted name of the setting.
+   * @return The environment variable name.
+   */
+  private static String toEnvName(String name) {
+    return name.replace('.', '_').replace('-', '_').toUpperCase();
+  }
+}
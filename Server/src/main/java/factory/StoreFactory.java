@@ -0,0 +1,182 @@
+package factory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import store.AlbumStore;
+import store.EmbeddedStore;
+import store.FileSystemImageStore;
+import store.GridFsImageStore;
+import store.ImageStore;
+import store.ReviewStore;
+
+/**
+ * The StoreFactory class creates the storage backends selected by the server configuration.
+ * @author ambikakabra
+ */
+public final class StoreFactory {
+
+  /** The storage engine of albums and reviews, either "mongo" or "embedded". */
+  private static final String STORAGE_ENGINE = ServerConfig.getString("storage.engine", "mongo");
+
+  /** The directory of the embedded storage engine's log. */
+  private static final String EMBEDDED_DIR = ServerConfig.getString("storage.embedded.dir",
+      Path.of(System.getProperty("java.io.tmpdir"), "album-store").toString());
+
+  /** The size of every log segment file of the embedded storage engine, in megabytes. */
+  private static final int EMBEDDED_SEGMENT_SIZE_MB = ServerConfig.getInt("storage.embedded.segmentSizeMb", 64);
+
+  /** Whether the embedded storage engine forces every write to the storage device before acknowledging it. */
+  private static final boolean EMBEDDED_SYNC_WRITES = ServerConfig.getBoolean("storage.embedded.syncWrites", false);
+
+  /** The initial number of slots of the embedded storage engine's off-heap tables. */
+  private static final int EMBEDDED_INDEX_CAPACITY = ServerConfig.getInt("storage.embedded.indexCapacity", 1 << 16);
+
+  /** The image store backend, either "gridfs" or "filesystem". */
+  private static final String IMAGE_STORE = ServerConfig.getString("image.store", "gridfs");
+
+  /** The directory used by the filesystem image store. */
+  private static final String IMAGE_STORE_DIR = ServerConfig.getString("image.store.dir",
+      Path.of(System.getProperty("java.io.tmpdir"), "album-images").toString());
+
+  private static volatile ImageStore imageStore;
+  private static volatile ConnectionManager connectionManager;
+  private static volatile EmbeddedStore embeddedStore;
+
+  // Private constructor to prevent instantiation
+  private StoreFactory() { }
+
+  /**
+   * Checks whether the embedded storage engine is selected by the "storage.engine" setting.
+   *
+   * @return True if albums, images and reviews are stored by the embedded engine.
+   * @throws IllegalStateException If the configured engine is unknown.
+   */
+  public static boolean isEmbedded() {
+    switch (STORAGE_ENGINE) {
+      case "mongo":
+        return false;
+      case "embedded":
+        return true;
+      default:
+        throw new IllegalStateException("Unknown storage engine: " + STORAGE_ENGINE);
+    }
+  }
+
+  /**
+   * Gets the album store of the configured storage engine, creating it on first use.
+   *
+   * @return The album store.
+   * @throws UncheckedIOException If the embedded engine's log cannot be opened.
+   */
+  public static AlbumStore getAlbumStore() {
+    return isEmbedded() ? getEmbeddedStore() : getConnectionManager();
+  }
+
+  /**
+   * Gets the review store of the configured storage engine, creating it on first use.
+   *
+   * @return The review store.
+   * @throws UncheckedIOException If the embedded engine's log cannot be opened.
+   */
+  public static ReviewStore getReviewStore() {
+    return isEmbedded() ? getEmbeddedStore() : getConnectionManager();
+  }
+
+  /**
+   * Gets the embedded storage engine, opening it on first use.
+   *
+   * @return The embedded store.
+   * @throws UncheckedIOException If the log cannot be opened.
+   */
+  public static EmbeddedStore getEmbeddedStore() {
+    EmbeddedStore store = embeddedStore;
+    if (store == null) {
+      synchronized (StoreFactory.class) {
+        store = embeddedStore;
+        if (store == null) {
+          try {
+            store = new EmbeddedStore(Path.of(EMBEDDED_DIR), EMBEDDED_SEGMENT_SIZE_MB * 1024 * 1024,
+                EMBEDDED_SYNC_WRITES, EMBEDDED_INDEX_CAPACITY);
+          } catch (IOException e) {
+            throw new UncheckedIOException("Error opening embedded store in " + EMBEDDED_DIR, e);
+          }
+          embeddedStore = store;
+        }
+      }
+    }
+    return store;
+  }
+
+  /**
+   * Closes the storage engine if it holds local resources. The MongoDB clients are closed by their own classes.
+   */
+  public static synchronized void close() {
+    if (embeddedStore != null) {
+      embeddedStore.close();
+    }
+  }
+
+  /**
+   * Gets the shared MongoDB connection manager, creating it on first use.
+   *
+   * @return The connection manager.
+   */
+  private static ConnectionManager getConnectionManager() {
+    ConnectionManager manager = connectionManager;
+    if (manager == null) {
+      synchronized (StoreFactory.class) {
+        manager = connectionManager;
+        if (manager == null) {
+          manager = new ConnectionManager();
+          connectionManager = manager;
+        }
+      }
+    }
+    return manager;
+  }
+
+  /**
+   * Gets the configured image store, creating it on first use. The embedded storage engine also stores the images.
+   *
+   * @return The image store.
+   * @throws IllegalStateException If the configured backend is unknown.
+   * @throws UncheckedIOException  If the filesystem store directory cannot be created.
+   */
+  public static ImageStore getImageStore() {
+    ImageStore store = imageStore;
+    if (store == null) {
+      synchronized (StoreFactory.class) {
+        store = imageStore;
+        if (store == null) {
+          store = createImageStore();
+          imageStore = store;
+        }
+      }
+    }
+    return store;
+  }
+
+  /**
+   * Creates the image store named by the "image.store" setting, or gets the embedded engine when it is selected.
+   *
+   * @return The new image store.
+   */
+  private static ImageStore createImageStore() {
+    if (isEmbedded()) {
+      return getEmbeddedStore();
+    }
+    switch (IMAGE_STORE) {
+      case "gridfs":
+        return new GridFsImageStore(ConnectionHelper.getDatabase(), "images");
+      case "filesystem":
+        try {
+          return new FileSystemImageStore(Path.of(IMAGE_STORE_DIR));
+        } catch (IOException e) {
+          throw new UncheckedIOException("Error creating image store directory " + IMAGE_STORE_DIR, e);
+        }
+      default:
+        throw new IllegalStateException("Unknown image store: " + IMAGE_STORE);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * The ReviewCounts class represents the number of likes and dislikes recorded for an album.
+ * It is used both for absolute counts and for deltas that still have to be applied to the database.
+ * @author ambikakabra
+ */
+public class ReviewCounts {
+  private long likes;
+  private long dislikes;
+
+  /**
+   * Constructs a ReviewCounts object with the specified number of likes and dislikes.
+   *
+   * @param likes    The number of likes.
+   * @param dislikes The number of dislikes.
+   */
+  public ReviewCounts(long likes, long dislikes) {
+    this.likes = likes;
+    this.dislikes = dislikes;
+  }
+
+  /**
+   * Gets the number of likes.
+   *
+   * @return The number of likes.
+   */
+  public long getLikes() {
+    return likes;
+  }
+
+  /**
+   * Sets the number of likes.
+   *
+   * @param likes The number of likes to set.
+   */
+  public void setLikes(long likes) {
+    this.likes = likes;
+  }
+
+  /**
+   * Gets the number of dislikes.
+   *
+   * @return The number of dislikes.
+   */
+  public long getDislikes() {
+    return dislikes;
+  }
+
+  /**
+   * Sets the number of dislikes.
+   *
+   * @param dislikes The number of dislikes to set.
+   */
+  public void setDislikes(long dislikes) {
+    this.dislikes = dislikes;
+  }
+}
@@ -0,0 +1,39 @@
+package model;
+
+/**
+ * The StoredImage class represents an image saved in an image store, identified by the store's reference and its size.
+ * @author ambikakabra
+ */
+public class StoredImage {
+  private final String imageId;
+  private final long size;
+
+  /**
+   * Constructs a StoredImage object with the specified reference and size.
+   *
+   * @param imageId The reference of the image within its image store.
+   * @param size    The size of the image in bytes.
+   */
+  public StoredImage(String imageId, long size) {
+    this.imageId = imageId;
+    this.size = size;
+  }
+
+  /**
+   * Gets the reference of the image within its image store.
+   *
+   * @return The image reference.
+   */
+  public String getImageId() {
+    return imageId;
+  }
+
+  /**
+   * Gets the size of the image in bytes.
+   *
+   * @return The size of the image.
+   */
+  public long getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,133 @@
+package review;
+
+import org.bson.types.ObjectId;
+
+/**
+ * The 12-byte ObjectId of an album, held as two primitive fields so it can be used as a hash key without keeping the
+ * hex string or a byte array. The review decoder reuses one mutable probe key per consumer to look up counters, and
+ * only copies it when an album is seen for the first time, so decoding a known album allocates nothing.
+ *
+ * <p>Keys stored in maps are never mutated; only probes created with {@link #probe()} are reloaded.
+ *
+ * @author ambikakabra
+ */
+public final class AlbumKey {
+  /** The number of bytes in an album ID. */
+  public static final int LENGTH = 12;
+
+  private long high;
+  private int low;
+
+  private AlbumKey(long high, int low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /**
+   * Creates the key of an album ID.
+   *
+   * @param albumId The album ID as a 24-character hex string.
+   * @return The key.
+   * @throws IllegalArgumentException If the album ID is not a valid ObjectId.
+   */
+  public static AlbumKey of(String albumId) {
+    return of(new ObjectId(albumId));
+  }
+
+  /**
+   * Creates the key of an album ID.
+   *
+   * @param albumId The album ID.
+   * @return The key.
+   */
+  public static AlbumKey of(ObjectId albumId) {
+    AlbumKey key = probe();
+    key.load(albumId.toByteArray(), 0);
+    return key;
+  }
+
+  /**
+   * Creates an empty mutable key for lookups.
+   *
+   * @return The probe key.
+   */
+  static AlbumKey probe() {
+    return new AlbumKey(0, 0);
+  }
+
+  /**
+   * Loads the key from 12 bytes of an array.
+   *
+   * @param bytes  The array.
+   * @param offset The offset of the first byte of the album ID.
+   */
+  void load(byte[] bytes, int offset) {
+    long h = 0;
+    for (int i = 0; i < 8; i++) {
+      h = (h << 8) | (bytes[offset + i] & 0xFF);
+    }
+    int l = 0;
+    for (int i = 8; i < LENGTH; i++) {
+      l = (l << 8) | (bytes[offset + i] & 0xFF);
+    }
+    this.high = h;
+    this.low = l;
+  }
+
+  /**
+   * Copies the key, typically a probe that is about to be stored in a map.
+   *
+   * @return An independent key with the same value.
+   */
+  AlbumKey copy() {
+    return new AlbumKey(high, low);
+  }
+
+  /**
+   * Converts the key back to an ObjectId.
+   *
+   * @return The album ID.
+   */
+  public ObjectId toObjectId() {
+    byte[] bytes = new byte[LENGTH];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (high >>> (56 - 8 * i));
+    }
+    for (int i = 0; i < 4; i++) {
+      bytes[8 + i] = (byte) (low >>> (24 - 8 * i));
+    }
+    return new ObjectId(bytes);
+  }
+
+  /**
+   * Converts the key to the hex string used as album ID in requests and documents.
+   *
+   * @return The album ID as a 24-character hex string.
+   */
+  public String toHexString() {
+    return toObjectId().toHexString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof AlbumKey)) {
+      return false;
+    }
+    AlbumKey key = (AlbumKey) other;
+    return high == key.high && low == key.low;
+  }
+
+  @Override
+  public int hashCode() {
+    // The low bytes hold the ObjectId counter, which varies the most between albums.
+    return low * 31 + Long.hashCode(high);
+  }
+
+  @Override
+  public String toString() {
+    return toHexString();
+  }
+}
@@ -0,0 +1,114 @@
+package review;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring buffer for many producers and a single consumer. Producers claim a slot by advancing the
+ * tail with a CAS, write their element and then publish it by setting the slot's sequence number. The consumer only
+ * reads slots whose sequence shows they are published, so it never sees a half-written element. A full buffer is
+ * reported to the producer instead of blocking it.
+ *
+ * @param <E> The type of the elements.
+ * @author ambikakabra
+ */
+public class MpscRingBuffer<E> {
+  /** The largest number of slots. */
+  public static final int MAX_CAPACITY = 1 << 30;
+
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+
+  /**
+   * Constructs a MpscRingBuffer.
+   *
+   * @param capacity The number of slots, rounded up to a power of two of at least 2.
+   * @throws IllegalArgumentException If the capacity is less than 1 or more than {@link #MAX_CAPACITY}.
+   */
+  public MpscRingBuffer(int capacity) {
+    if (capacity < 1 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+    }
+    int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = size - 1;
+    this.elements = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element if there is room. Safe to call from any thread.
+   *
+   * @param element The element to add.
+   * @return True if the element was added, false if the buffer is full.
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(slot, element);
+          sequences.set(slot, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Removes up to a number of published elements and passes them to an action. Must only be called by the single
+   * consumer thread.
+   *
+   * @param action      The action for every removed element.
+   * @param maxElements The largest number of elements to remove.
+   * @return The number of elements removed.
+   */
+  public int drain(Consumer<E> action, int maxElements) {
+    long position = head;
+    int drained = 0;
+    while (drained < maxElements) {
+      int slot = (int) position & mask;
+      if (sequences.get(slot) != position + 1) {
+        break;
+      }
+      E element = elements.get(slot);
+      elements.lazySet(slot, null);
+      sequences.set(slot, position + mask + 1);
+      position++;
+      drained++;
+      action.accept(element);
+    }
+    head = position;
+    return drained;
+  }
+
+  /**
+   * Checks whether the buffer holds no published elements. Only exact when called by the consumer thread.
+   *
+   * @return True if the buffer is empty.
+   */
+  public boolean isEmpty() {
+    long position = head;
+    return sequences.get((int) position & mask) != position + 1;
+  }
+
+  /**
+   * Gets the number of slots.
+   *
+   * @return The capacity.
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,357 @@
+package review;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import model.ReviewCounts;
+import store.PartialWriteException;
+import store.ReviewStore;
+
+/**
+ * Write-behind aggregator for album reviews. Deliveries are absorbed into a striped, lock-free counter table and
+ * the coalesced deltas are flushed to the database as one bulk write, either when enough events are pending or when
+ * the flush interval elapses.
+ *
+ * <p>Counters are keyed by {@link AlbumKey}, so a consumer can record a decoded event with a reused probe key and no
+ * allocation once the album is in the table.
+ *
+ * <p>A flush detaches every counter it drains, so the table only holds the albums reviewed since the last flush and a
+ * flush costs as much as the traffic it carries, however many albums have ever been reviewed. A delivery that
+ * increments a counter just after it was detached notices the detached flag and moves whatever the flush did not drain
+ * to the album's new counter, so no review is lost or counted twice.
+ *
+ * <p>Every successful bulk write is also applied to the {@link ReviewCountView}, which serves review counts to
+ * readers.
+ *
+ * <p>Consumers that acknowledge messages manually register a {@link CommitListener}, which is told after every
+ * successful bulk write which of its deliveries are now safely stored.
+ *
+ * <p>With a {@link ReviewJournal}, a flush is safely stored as soon as the journal has committed it, so deliveries are
+ * acknowledged before the database is written. The database then receives the journal's cumulative counts of every
+ * album it has not stored yet, which it applies idempotently, and a failed write is simply retried by the next flush.
+ *
+ * @author ambikakabra
+ */
+public class ReviewAggregator implements AutoCloseable {
+
+  /**
+   * Callback for consumers that may only acknowledge deliveries once their deltas have been written.
+   */
+  public interface CommitListener {
+
+    /**
+     * Captures the position of the latest delivery recorded by this listener. It is called right before the counter
+     * table is drained, so every delivery at or before the returned mark is part of the flush.
+     *
+     * @return The mark, typically the latest recorded delivery tag.
+     */
+    long mark();
+
+    /**
+     * Signals that every delivery at or before the given mark has been written to the database.
+     *
+     * @param mark The mark returned by {@link #mark()} before the flush.
+     */
+    void committed(long mark);
+  }
+
+  /** Striped like and dislike counters for one album. */
+  private static final class Counter {
+    private final LongAdder likes = new LongAdder();
+    private final LongAdder dislikes = new LongAdder();
+    private volatile boolean detached;
+  }
+
+  private final ConcurrentHashMap<AlbumKey, Counter> counters = new ConcurrentHashMap<>();
+  private final LongAdder pendingEvents = new LongAdder();
+  private final LongAdder recordedEvents = new LongAdder();
+  private final LongAdder writeOps = new LongAdder();
+  private final List<CommitListener> commitListeners = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final Object flushLock = new Object();
+  private final ReviewStore reviewStore;
+  private final ReviewJournal journal;
+  private final ReviewCountView reviewCountView;
+  private final int maxPendingEvents;
+  private final ScheduledExecutorService flusher;
+
+  /**
+   * Constructs a ReviewAggregator and starts its background flusher.
+   *
+   * @param reviewStore       The review store that the coalesced deltas are written to.
+   * @param reviewCountView   The view that committed deltas are applied to.
+   * @param maxPendingEvents  The number of pending events that triggers an early flush.
+   * @param flushIntervalMs   The maximum time, in milliseconds, a recorded event waits before it is flushed.
+   */
+  public ReviewAggregator(ReviewStore reviewStore, ReviewCountView reviewCountView, int maxPendingEvents,
+      long flushIntervalMs) {
+    this(reviewStore, null, reviewCountView, maxPendingEvents, flushIntervalMs);
+  }
+
+  /**
+   * Constructs a ReviewAggregator that commits every flush to a journal before it writes the database, and starts its
+   * background flusher. The aggregator closes the journal when it is closed.
+   *
+   * @param reviewStore      The review store that the counts are written to.
+   * @param journal          The journal that makes flushes durable, or null to write the deltas to the store directly.
+   * @param reviewCountView  The view that committed counts are applied to.
+   * @param maxPendingEvents The number of pending events that triggers an early flush.
+   * @param flushIntervalMs  The maximum time, in milliseconds, a recorded event waits before it is flushed.
+   */
+  public ReviewAggregator(ReviewStore reviewStore, ReviewJournal journal, ReviewCountView reviewCountView,
+      int maxPendingEvents, long flushIntervalMs) {
+    this.reviewStore = reviewStore;
+    this.journal = journal;
+    this.reviewCountView = reviewCountView;
+    this.maxPendingEvents = maxPendingEvents;
+    this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "review-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records a single like or dislike for an album.
+   *
+   * @param albumKey The key of the reviewed album. It may be a probe that is reused after the call.
+   * @param like     True for a like, false for a dislike.
+   */
+  public void record(AlbumKey albumKey, boolean like) {
+    Counter counter = counterOf(albumKey);
+    if (like) {
+      counter.likes.increment();
+    } else {
+      counter.dislikes.increment();
+    }
+    // A flush may have drained and detached the counter before the increment landed.
+    while (counter.detached) {
+      long likes = counter.likes.sumThenReset();
+      long dislikes = counter.dislikes.sumThenReset();
+      if (likes == 0 && dislikes == 0) {
+        break;
+      }
+      counter = counterOf(albumKey);
+      counter.likes.add(likes);
+      counter.dislikes.add(dislikes);
+    }
+    recordedEvents.increment();
+    pendingEvents.increment();
+
+    if (pendingEvents.sum() >= maxPendingEvents && flushRequested.compareAndSet(false, true)) {
+      try {
+        flusher.execute(this::flush);
+      } catch (RejectedExecutionException e) {
+        // The aggregator is closing; its final flush picks up this event.
+        flushRequested.set(false);
+      }
+    }
+  }
+
+  /**
+   * Registers a listener that is notified after every successful flush.
+   *
+   * @param listener The listener to register.
+   */
+  public void addCommitListener(CommitListener listener) {
+    commitListeners.add(listener);
+  }
+
+  /**
+   * Removes a previously registered commit listener.
+   *
+   * @param listener The listener to remove.
+   */
+  public void removeCommitListener(CommitListener listener) {
+    commitListeners.remove(listener);
+  }
+
+  /**
+   * Drains the counter table and writes the coalesced deltas to the database. Deltas that fail to be written are
+   * added back to the table so that the next flush retries them. When only some of them fail, the written deltas are
+   * applied to the review count view and are not sent again. Commit listeners are only notified once every delta has
+   * been written, since their marks cover the deliveries of all albums.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      flushRequested.set(false);
+      pendingEvents.reset();
+      List<CommitListener> listeners = List.copyOf(commitListeners);
+      long[] marks = new long[listeners.size()];
+      for (int i = 0; i < marks.length; i++) {
+        marks[i] = listeners.get(i).mark();
+      }
+
+      Map<String, ReviewCounts> deltas = drain();
+      if (journal != null) {
+        flushToJournal(deltas, listeners, marks);
+        return;
+      }
+      if (!deltas.isEmpty()) {
+        Map<String, ReviewCounts> committed = Map.of();
+        reviewCountView.beginCommit();
+        try {
+          writeOps.add(reviewStore.bulkUpdateReviews(deltas));
+          committed = deltas;
+        } catch (PartialWriteException e) {
+          e.printStackTrace();
+          writeOps.add(deltas.size());
+          Map<String, ReviewCounts> failed = new HashMap<>(deltas);
+          failed.keySet().retainAll(e.getFailedAlbumIds());
+          committed = new HashMap<>(deltas);
+          committed.keySet().removeAll(e.getFailedAlbumIds());
+          restore(failed);
+          return;
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+          restore(deltas);
+          return;
+        } finally {
+          reviewCountView.endCommit(committed);
+        }
+      }
+      for (int i = 0; i < marks.length; i++) {
+        listeners.get(i).committed(marks[i]);
+      }
+    }
+  }
+
+  /**
+   * Commits drained deltas to the journal, acknowledges them and then writes the counts that have not been stored.
+   * Must hold the flush lock.
+   *
+   * @param deltas    The drained deltas keyed by album ID.
+   * @param listeners The commit listeners whose marks were captured before the drain.
+   * @param marks     The marks of the listeners.
+   */
+  private void flushToJournal(Map<String, ReviewCounts> deltas, List<CommitListener> listeners, long[] marks) {
+    if (!deltas.isEmpty()) {
+      try {
+        journal.commit(deltas);
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace();
+        restore(deltas);
+        return;
+      }
+    }
+    for (int i = 0; i < marks.length; i++) {
+      listeners.get(i).committed(marks[i]);
+    }
+
+    Map<String, ReviewCounts> unstored = journal.getUnstoredCounts();
+    if (unstored.isEmpty()) {
+      return;
+    }
+    Map<String, ReviewCounts> stored = Map.of();
+    reviewCountView.beginCommit();
+    try {
+      writeOps.add(reviewStore.bulkApplyReviews(journal.getWriterId(), unstored));
+      stored = journal.markStored(unstored);
+    } catch (PartialWriteException e) {
+      // The failed counts stay in the journal and are written again by the next flush.
+      e.printStackTrace();
+      writeOps.add(unstored.size());
+      unstored.keySet().removeAll(e.getFailedAlbumIds());
+      stored = journal.markStored(unstored);
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+    } finally {
+      reviewCountView.endCommit(stored);
+    }
+  }
+
+  /**
+   * Gets the total number of events recorded by this aggregator.
+   *
+   * @return The number of recorded events.
+   */
+  public long getRecordedEvents() {
+    return recordedEvents.sum();
+  }
+
+  /**
+   * Gets the total number of database write operations issued by this aggregator.
+   *
+   * @return The number of write operations.
+   */
+  public long getWriteOps() {
+    return writeOps.sum();
+  }
+
+  /**
+   * Stops the background flusher, flushes whatever is still pending and closes the journal.
+   */
+  @Override
+  public void close() {
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    if (journal != null) {
+      synchronized (flushLock) {
+        journal.close();
+      }
+    }
+  }
+
+  /**
+   * Gets the counter of an album, adding one if the album has none.
+   *
+   * @param albumKey The key of the album, possibly a probe.
+   * @return The counter.
+   */
+  private Counter counterOf(AlbumKey albumKey) {
+    Counter counter = counters.get(albumKey);
+    if (counter == null) {
+      counter = counters.computeIfAbsent(albumKey.copy(), key -> new Counter());
+    }
+    return counter;
+  }
+
+  /**
+   * Detaches every counter from the table and collects the non-zero deltas. A counter is marked detached before it is
+   * drained, so an increment that the drain misses is moved to a new counter by the delivery that made it.
+   *
+   * @return The deltas keyed by album ID.
+   */
+  private Map<String, ReviewCounts> drain() {
+    Map<String, ReviewCounts> deltas = new HashMap<>();
+    counters.forEach((albumKey, counter) -> {
+      counter.detached = true;
+      counters.remove(albumKey, counter);
+      long likes = counter.likes.sumThenReset();
+      long dislikes = counter.dislikes.sumThenReset();
+      if (likes != 0 || dislikes != 0) {
+        deltas.put(albumKey.toHexString(), new ReviewCounts(likes, dislikes));
+      }
+    });
+    return deltas;
+  }
+
+  /**
+   * Adds deltas that could not be written back into the counter table.
+   *
+   * @param deltas The deltas keyed by album ID.
+   */
+  private void restore(Map<String, ReviewCounts> deltas) {
+    deltas.forEach((albumId, delta) -> {
+      Counter counter = counterOf(AlbumKey.of(albumId));
+      counter.likes.add(delta.getLikes());
+      counter.dislikes.add(delta.getDislikes());
+      pendingEvents.add(delta.getLikes() + delta.getDislikes());
+    });
+  }
+}
@@ -0,0 +1,162 @@
+package review;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.bson.types.ObjectId;
+
+/**
+ * Encodes and decodes review events in the compact binary format used on the review queue. A message is a 4-byte
+ * header followed by one or more 13-byte events:
+ * <pre>
+ *   header: magic (1 byte, 0xA7) | version (1 byte, 1) | event count (2 bytes, big-endian)
+ *   event:  album ObjectId (12 bytes) | op (1 byte, 1 = like, 2 = dislike)
+ * </pre>
+ * A single review is sent as a batch of one. Messages in the legacy text format {@code "albumId,value"} are still
+ * decoded, so reviews queued by an older server are not lost during an upgrade; they are told apart by the magic byte,
+ * which never starts a text message.
+ *
+ * @author ambikakabra
+ */
+public final class ReviewCodec {
+  /** The first byte of every binary message. */
+  static final byte MAGIC = (byte) 0xA7;
+
+  /** The version of the binary format. */
+  static final byte VERSION = 1;
+
+  /** The op of a like. */
+  static final byte OP_LIKE = 1;
+
+  /** The op of a dislike. */
+  static final byte OP_DISLIKE = 2;
+
+  /** The length of the message header. */
+  public static final int HEADER_LENGTH = 4;
+
+  /** The length of one encoded event. */
+  public static final int EVENT_LENGTH = AlbumKey.LENGTH + 1;
+
+  /** The largest number of events in one message. */
+  public static final int MAX_EVENTS = 0xFFFF;
+
+  /**
+   * Receives decoded events. The key is a probe that is reused for the next event, so it must be copied if kept.
+   */
+  public interface EventHandler {
+
+    /**
+     * Handles one review event.
+     *
+     * @param albumKey The key of the reviewed album, only valid during the call.
+     * @param like     True for a like, false for a dislike.
+     */
+    void onEvent(AlbumKey albumKey, boolean like);
+  }
+
+  // Private constructor to prevent instantiation
+  private ReviewCodec() { }
+
+  /**
+   * Encodes a single review as a message.
+   *
+   * @param albumId The reviewed album.
+   * @param like    True for a like, false for a dislike.
+   * @return The encoded message.
+   */
+  public static byte[] encode(ObjectId albumId, boolean like) {
+    ByteBuffer buffer = ByteBuffer.allocate(encodedLength(1));
+    writeHeader(buffer, 1);
+    writeEvent(buffer, albumId, like);
+    return buffer.array();
+  }
+
+  /**
+   * Gets the length of a message with the given number of events.
+   *
+   * @param count The number of events.
+   * @return The message length in bytes.
+   */
+  public static int encodedLength(int count) {
+    return HEADER_LENGTH + count * EVENT_LENGTH;
+  }
+
+  /**
+   * Writes the header of a message.
+   *
+   * @param buffer The buffer to write to.
+   * @param count  The number of events that follow, at most {@link #MAX_EVENTS}.
+   */
+  public static void writeHeader(ByteBuffer buffer, int count) {
+    if (count < 1 || count > MAX_EVENTS) {
+      throw new IllegalArgumentException("Invalid event count: " + count);
+    }
+    buffer.put(MAGIC).put(VERSION).putShort((short) count);
+  }
+
+  /**
+   * Writes one event of a message.
+   *
+   * @param buffer  The buffer to write to.
+   * @param albumId The reviewed album.
+   * @param like    True for a like, false for a dislike.
+   */
+  public static void writeEvent(ByteBuffer buffer, ObjectId albumId, boolean like) {
+    albumId.putToByteBuffer(buffer);
+    buffer.put(like ? OP_LIKE : OP_DISLIKE);
+  }
+
+  /**
+   * Checks whether a message is in the binary format.
+   *
+   * @param body The message body.
+   * @return True if the message starts with a valid binary header.
+   */
+  public static boolean isBinary(byte[] body) {
+    return body.length >= HEADER_LENGTH && body[0] == MAGIC && body[1] == VERSION;
+  }
+
+  /**
+   * Decodes a binary message without allocating, passing every event to the handler.
+   *
+   * @param body    The message body.
+   * @param probe   The key that is reloaded for every event.
+   * @param handler The handler of the events.
+   * @return The number of events decoded.
+   * @throws IllegalArgumentException If the message is malformed, in which case none of its events are handled.
+   */
+  public static int decode(byte[] body, AlbumKey probe, EventHandler handler) {
+    if (!isBinary(body)) {
+      throw new IllegalArgumentException("Not a binary review message");
+    }
+    int count = ((body[2] & 0xFF) << 8) | (body[3] & 0xFF);
+    if (count == 0 || body.length != encodedLength(count)) {
+      throw new IllegalArgumentException("Review message length " + body.length + " does not match count " + count);
+    }
+    for (int offset = HEADER_LENGTH; offset < body.length; offset += EVENT_LENGTH) {
+      byte op = body[offset + AlbumKey.LENGTH];
+      if (op != OP_LIKE && op != OP_DISLIKE) {
+        throw new IllegalArgumentException("Unknown review op: " + op);
+      }
+    }
+    for (int offset = HEADER_LENGTH; offset < body.length; offset += EVENT_LENGTH) {
+      probe.load(body, offset);
+      handler.onEvent(probe, body[offset + AlbumKey.LENGTH] == OP_LIKE);
+    }
+    return count;
+  }
+
+  /**
+   * Decodes a message in the legacy text format {@code "albumId,value"}, where a positive value is a like.
+   *
+   * @param body    The message body.
+   * @param handler The handler of the event.
+   * @throws IllegalArgumentException If the message is malformed.
+   */
+  public static void decodeLegacy(byte[] body, EventHandler handler) {
+    String[] messageParts = new String(body, StandardCharsets.UTF_8).split(",");
+    if (messageParts.length != 2) {
+      throw new IllegalArgumentException("Malformed review message");
+    }
+    handler.onEvent(AlbumKey.of(messageParts[0]), Integer.parseInt(messageParts[1].trim()) > 0);
+  }
+}
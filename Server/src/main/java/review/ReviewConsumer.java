@@ -0,0 +1,159 @@
+package review;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes review messages with manual acknowledgements. Every worker owns its own channel and prefetch window and
+ * records deliveries into a shared {@link ReviewAggregator}. Deliveries are acknowledged with {@code multiple=true}
+ * only after the aggregator's bulk write that contains them has committed, which gives at-least-once delivery.
+ *
+ * <p>The batch size and linger of the consumer are those of the aggregator. The prefetch of all workers together
+ * should be larger than the batch size, otherwise batches are only ever flushed by the linger timer.
+ *
+ * @author ambikakabra
+ */
+public class ReviewConsumer implements AutoCloseable {
+
+  private final Connection connection;
+  private final String queueName;
+  private final int numWorkers;
+  private final int prefetch;
+  private final ReviewAggregator aggregator;
+  private final List<Worker> workers = new ArrayList<>();
+
+  /**
+   * Constructs a ReviewConsumer. No messages are consumed until {@link #start()} is called.
+   *
+   * @param connection The RabbitMQ connection on which the worker channels are opened. It is closed with the consumer.
+   * @param queueName  The name of the queue to consume from.
+   * @param numWorkers The number of workers, each with its own channel.
+   * @param prefetch   The maximum number of unacknowledged messages per worker.
+   * @param aggregator The aggregator that absorbs the reviews and writes them to the database.
+   */
+  public ReviewConsumer(Connection connection, String queueName, int numWorkers, int prefetch,
+      ReviewAggregator aggregator) {
+    this.connection = connection;
+    this.queueName = queueName;
+    this.numWorkers = numWorkers;
+    this.prefetch = prefetch;
+    this.aggregator = aggregator;
+  }
+
+  /**
+   * Opens one channel per worker and starts consuming.
+   *
+   * @throws IOException If a channel cannot be opened or the queue cannot be consumed.
+   */
+  public synchronized void start() throws IOException {
+    for (int i = 0; i < numWorkers; i++) {
+      Channel channel = connection.createChannel();
+      channel.queueDeclare(queueName, false, false, false, null);
+      channel.basicQos(prefetch);
+
+      Worker worker = new Worker(channel);
+      aggregator.addCommitListener(worker);
+      worker.consumerTag = channel.basicConsume(queueName, false, worker);
+      workers.add(worker);
+    }
+  }
+
+  /**
+   * Stops consuming, flushes the batch that is in flight so its deliveries are acknowledged, and closes the worker
+   * channels and the connection. Deliveries that could not be flushed stay unacknowledged and are redelivered by the
+   * broker.
+   */
+  @Override
+  public synchronized void close() {
+    for (Worker worker : workers) {
+      try {
+        worker.getChannel().basicCancel(worker.consumerTag);
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace();
+      }
+    }
+    aggregator.flush();
+    for (Worker worker : workers) {
+      aggregator.removeCommitListener(worker);
+      try {
+        worker.getChannel().close();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+    workers.clear();
+    try {
+      connection.close();
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * A consumer bound to a single channel that acknowledges its deliveries once they are committed.
+   */
+  private class Worker extends DefaultConsumer implements ReviewAggregator.CommitListener, ReviewCodec.EventHandler {
+    private final AlbumKey probe = AlbumKey.probe();
+    private volatile String consumerTag;
+    private volatile long lastDeliveryTag;
+    private long lastAckedTag;
+
+    /**
+     * Constructs a Worker for the given channel.
+     *
+     * @param channel The channel this worker consumes from.
+     */
+    Worker(Channel channel) {
+      super(channel);
+    }
+
+    /**
+     * Records the reviews carried by a delivery, in the binary format or the legacy text format. The delivery tag is
+     * published only after the reviews have been recorded, so a flush never acknowledges a delivery whose delta it
+     * did not drain.
+     */
+    @Override
+    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+      try {
+        if (ReviewCodec.isBinary(body)) {
+          ReviewCodec.decode(body, probe, this);
+        } else {
+          ReviewCodec.decodeLegacy(body, this);
+        }
+      } catch (RuntimeException e) {
+        // A malformed message is dropped and acknowledged with the next batch.
+        e.printStackTrace();
+      }
+      lastDeliveryTag = envelope.getDeliveryTag();
+    }
+
+    @Override
+    public void onEvent(AlbumKey albumKey, boolean like) {
+      aggregator.record(albumKey, like);
+    }
+
+    @Override
+    public long mark() {
+      return lastDeliveryTag;
+    }
+
+    @Override
+    public synchronized void committed(long mark) {
+      if (mark <= lastAckedTag) {
+        return;
+      }
+      try {
+        getChannel().basicAck(mark, true);
+        lastAckedTag = mark;
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
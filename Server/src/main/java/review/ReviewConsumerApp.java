@@ -0,0 +1,107 @@
+package review;
+
+import factory.ConnectionHelper;
+import factory.MongoSchema;
+import factory.RabbitMQConnectionManager;
+import factory.ServerConfig;
+import factory.StoreFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Standalone review consumer process. It consumes the review queues of all partitions and writes the counts to the
+ * review store without a servlet container, so consumer nodes can be sized and scaled apart from the web tier. Web
+ * nodes then run with {@code review.consumer.embedded=false}.
+ *
+ * <p>The process reads the same settings as the embedded consumers ({@code review.consumer.workers},
+ * {@code review.consumer.prefetch}, {@code review.flush.maxEvents}, {@code review.flush.intervalMs}, the
+ * {@code review.journal.*} settings and {@code rabbitmq.review.partitions}) from its own system properties and environment. On SIGTERM or SIGINT it stops
+ * consuming, flushes and acknowledges the batches in flight and closes its connections; deliveries that could not be
+ * flushed are redelivered by the broker.
+ *
+ * @author ambikakabra
+ */
+public final class ReviewConsumerApp {
+
+  /** The default directory of the review journals. */
+  private static final String DEFAULT_JOURNAL_DIR =
+      Path.of(System.getProperty("java.io.tmpdir"), "review-journal").toString();
+
+  // Private constructor to prevent instantiation
+  private ReviewConsumerApp() { }
+
+  /**
+   * Starts the consumers and runs until the process is asked to stop.
+   *
+   * @param args The command line arguments, which are not used.
+   */
+  public static void main(String[] args) {
+    if (StoreFactory.isEmbedded()) {
+      System.err.println("The embedded storage engine belongs to the servlet process; run the review consumers "
+          + "embedded in the servlet instead");
+      System.exit(1);
+    }
+    // Nothing reads the counts in this process, so the view is kept minimal.
+    ReviewConsumerGroup consumers = new ReviewConsumerGroup(StoreFactory.getReviewStore(), new ReviewCountView(1, 0),
+        ServerConfig.getInt("review.consumer.workers", 20),
+        ServerConfig.getInt("review.consumer.prefetch", 250),
+        ServerConfig.getInt("review.flush.maxEvents", 1000),
+        ServerConfig.getLong("review.flush.intervalMs", 200),
+        ServerConfig.getBoolean("review.journal.enabled", false)
+            ? Path.of(ServerConfig.getString("review.journal.dir", DEFAULT_JOURNAL_DIR))
+            : null,
+        ServerConfig.getInt("review.journal.snapshotEvery", 1000));
+    long reportIntervalSeconds = ServerConfig.getLong("review.consumer.reportIntervalSeconds", 10);
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "review-consumer-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    CountDownLatch stopped = new CountDownLatch(1);
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      System.out.println("Stopping review consumers");
+      reporter.shutdownNow();
+      consumers.close();
+      RabbitMQConnectionManager.close();
+      ConnectionHelper.close();
+      report(consumers);
+      stopped.countDown();
+    }, "review-consumer-shutdown"));
+
+    MongoSchema.ensureIndexes();
+    try {
+      RabbitMQConnectionManager.declareReviewQueues();
+      consumers.start();
+    } catch (IOException | TimeoutException | InterruptedException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+    System.out.println("Consuming " + RabbitMQConnectionManager.getPartitionCount() + " review queue partition(s)");
+    if (reportIntervalSeconds > 0) {
+      reporter.scheduleAtFixedRate(() -> report(consumers), reportIntervalSeconds, reportIntervalSeconds,
+          TimeUnit.SECONDS);
+    }
+
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Prints the progress of the consumers.
+   *
+   * @param consumers The review consumers.
+   */
+  private static void report(ReviewConsumerGroup consumers) {
+    System.out.println("Consumed reviews: " + consumers.getRecordedEvents()
+        + ", review write ops: " + consumers.getWriteOps());
+  }
+}
@@ -0,0 +1,133 @@
+package review;
+
+import factory.RabbitMQConnectionManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import store.ReviewStore;
+
+/**
+ * Consumes the review queues of all partitions. Every partition has its own {@link ReviewConsumer} on its own
+ * connection and its own {@link ReviewAggregator}, so an album's reviews are only ever counted and flushed by the
+ * partition that owns it and partitions never contend on each other's counter tables. All aggregators apply their
+ * commits to the same {@link ReviewCountView}.
+ *
+ * <p>With a journal directory, every partition also gets its own {@link ReviewJournal} in a subdirectory named after
+ * the partition, so deliveries are acknowledged once they are journaled.
+ *
+ * @author ambikakabra
+ */
+public class ReviewConsumerGroup implements AutoCloseable {
+
+  private final ReviewStore reviewStore;
+  private final ReviewCountView reviewCountView;
+  private final int workersPerPartition;
+  private final int prefetch;
+  private final int flushMaxEvents;
+  private final long flushIntervalMs;
+  private final Path journalDirectory;
+  private final int snapshotEvery;
+  private final List<ReviewAggregator> aggregators = new ArrayList<>();
+  private final List<ReviewConsumer> consumers = new ArrayList<>();
+
+  /**
+   * Constructs a ReviewConsumerGroup. No messages are consumed until {@link #start()} is called.
+   *
+   * @param reviewStore         The review store that the coalesced deltas are written to.
+   * @param reviewCountView     The view that committed deltas are applied to.
+   * @param workersPerPartition The number of workers of every partition, each with its own channel.
+   * @param prefetch            The maximum number of unacknowledged messages per worker.
+   * @param flushMaxEvents      The number of pending events of a partition that triggers an early flush.
+   * @param flushIntervalMs     The maximum time, in milliseconds, a recorded event waits before it is flushed.
+   * @param journalDirectory    The directory of the partitions' journals, or null to write the store directly.
+   * @param snapshotEvery       The number of journal commits after which a journal writes a snapshot.
+   */
+  public ReviewConsumerGroup(ReviewStore reviewStore, ReviewCountView reviewCountView,
+      int workersPerPartition, int prefetch, int flushMaxEvents, long flushIntervalMs, Path journalDirectory,
+      int snapshotEvery) {
+    this.reviewStore = reviewStore;
+    this.reviewCountView = reviewCountView;
+    this.workersPerPartition = workersPerPartition;
+    this.prefetch = prefetch;
+    this.flushMaxEvents = flushMaxEvents;
+    this.flushIntervalMs = flushIntervalMs;
+    this.journalDirectory = journalDirectory;
+    this.snapshotEvery = snapshotEvery;
+  }
+
+  /**
+   * Starts an aggregator and a consumer for every review queue partition. Partitions that were started before a
+   * failure keep consuming until the group is closed. A partition that fails to start is closed again, releasing its
+   * journal, so calling this method again retries exactly the partitions that are not running.
+   *
+   * @throws IOException      If a partition's journal cannot be opened, its channels cannot be opened or its queue
+   *                          cannot be consumed.
+   * @throws TimeoutException If a partition's connection cannot be created.
+   */
+  public synchronized void start() throws IOException, TimeoutException {
+    for (int partition = consumers.size(); partition < RabbitMQConnectionManager.getPartitionCount(); partition++) {
+      ReviewJournal journal = journalDirectory == null
+          ? null
+          : new ReviewJournal(journalDirectory.resolve("partition-" + partition), snapshotEvery);
+      ReviewAggregator aggregator =
+          new ReviewAggregator(reviewStore, journal, reviewCountView, flushMaxEvents, flushIntervalMs);
+      ReviewConsumer consumer = null;
+      try {
+        consumer = new ReviewConsumer(RabbitMQConnectionManager.getNewConnection(),
+            RabbitMQConnectionManager.getQueueName(partition), workersPerPartition, prefetch, aggregator);
+        consumer.start();
+      } catch (IOException | TimeoutException | RuntimeException e) {
+        if (consumer != null) {
+          consumer.close();
+        }
+        aggregator.close();
+        throw e;
+      }
+      aggregators.add(aggregator);
+      consumers.add(consumer);
+    }
+  }
+
+  /**
+   * Stops all consumers, acknowledging the batches they have in flight, and flushes and stops all aggregators.
+   */
+  @Override
+  public synchronized void close() {
+    for (ReviewConsumer consumer : consumers) {
+      consumer.close();
+    }
+    consumers.clear();
+    for (ReviewAggregator aggregator : aggregators) {
+      aggregator.close();
+    }
+    aggregators.clear();
+  }
+
+  /**
+   * Gets the number of review events recorded by all partitions.
+   *
+   * @return The recorded event count.
+   */
+  public synchronized long getRecordedEvents() {
+    long total = 0;
+    for (ReviewAggregator aggregator : aggregators) {
+      total += aggregator.getRecordedEvents();
+    }
+    return total;
+  }
+
+  /**
+   * Gets the number of database write operations issued by all partitions.
+   *
+   * @return The write operation count.
+   */
+  public synchronized long getWriteOps() {
+    long total = 0;
+    for (ReviewAggregator aggregator : aggregators) {
+      total += aggregator.getWriteOps();
+    }
+    return total;
+  }
+}
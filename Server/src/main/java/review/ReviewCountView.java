@@ -0,0 +1,224 @@
+package review;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import model.ReviewCounts;
+
+/**
+ * In-memory materialized view of the like and dislike counts of albums. The {@link ReviewAggregator} applies every
+ * batch of deltas to the view right after it has been written to the database, so with a single consumer process the
+ * view equals the stored counts. Reads are a single map lookup of an immutable snapshot and never block on the write
+ * stream.
+ *
+ * <p>The view only sees the commits of the aggregators in its own process. When other nodes also consume reviews, it
+ * misses their commits, so every entry expires after a time to live and is then read from the database again; the
+ * time to live bounds how stale a count can be. The view also holds at most a maximum number of albums: when it is
+ * full, expired entries are swept and, if that is not enough, arbitrary entries are dropped.
+ *
+ * <p>Albums that are not in the view are loaded from the database. A loaded value is only added to the view if no
+ * batch was being written while it was read; otherwise it could miss deltas that the view never sees again, so it is
+ * returned without being cached. Every commit bumps an epoch, and loaders compare the epoch before and after adding
+ * their value to detect such overlaps.
+ *
+ * @author ambikakabra
+ */
+public class ReviewCountView {
+
+  /** The counts of an album and the time they expire. */
+  private static final class CachedCounts {
+    private final ReviewCounts counts;
+    private final long expiresAtNanos;
+
+    private CachedCounts(ReviewCounts counts, long expiresAtNanos) {
+      this.counts = counts;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    private boolean isExpired(long now) {
+      return expiresAtNanos - now <= 0;
+    }
+  }
+
+  private final Map<String, CachedCounts> counts = new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final long ttlNanos;
+  private final AtomicLong epoch = new AtomicLong();
+  private final AtomicInteger commitsInFlight = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Constructs a ReviewCountView.
+   *
+   * @param maxSize The maximum number of albums held in the view.
+   * @param ttlMs   The time, in milliseconds, the counts of an album stay in the view.
+   */
+  public ReviewCountView(int maxSize, long ttlMs) {
+    this.maxSize = Math.max(1, maxSize);
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+  }
+
+  /**
+   * Gets the counts of an album, loading them on a miss.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The function that reads the stored counts of the album, returning null if they cannot be read.
+   * @return The like and dislike counts, or null if they cannot be read.
+   */
+  public ReviewCounts get(String albumId, Function<String, ReviewCounts> loader) {
+    ReviewCounts cached = lookup(albumId);
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+
+    misses.increment();
+    long startEpoch = epoch.get();
+    boolean cacheable = commitsInFlight.get() == 0;
+    ReviewCounts loaded = loader.apply(albumId);
+    if (cacheable) {
+      return install(albumId, loaded, startEpoch);
+    }
+    return loaded;
+  }
+
+  /**
+   * Gets the counts of an album, loading them asynchronously on a miss.
+   *
+   * @param albumId The unique identifier of the album.
+   * @param loader  The function that starts reading the stored counts of the album, completing with null if they
+   *                cannot be read.
+   * @return A future of the like and dislike counts, or of null if they cannot be read.
+   */
+  public CompletableFuture<ReviewCounts> getAsync(String albumId,
+      Function<String, CompletableFuture<ReviewCounts>> loader) {
+    ReviewCounts cached = lookup(albumId);
+    if (cached != null) {
+      hits.increment();
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    misses.increment();
+    long startEpoch = epoch.get();
+    boolean cacheable = commitsInFlight.get() == 0;
+    return loader.apply(albumId).thenApply(loaded -> cacheable ? install(albumId, loaded, startEpoch) : loaded);
+  }
+
+  /**
+   * Marks the start of a database write of review deltas. Must be followed by {@link #endCommit(Map)}.
+   */
+  void beginCommit() {
+    commitsInFlight.incrementAndGet();
+    epoch.incrementAndGet();
+  }
+
+  /**
+   * Marks the end of a database write and applies its deltas to the albums in the view.
+   *
+   * @param committed The deltas that were written, keyed by album ID, or an empty map if the write failed.
+   */
+  void endCommit(Map<String, ReviewCounts> committed) {
+    try {
+      committed.forEach((albumId, delta) -> counts.computeIfPresent(albumId, (id, current) ->
+          new CachedCounts(new ReviewCounts(current.counts.getLikes() + delta.getLikes(),
+              current.counts.getDislikes() + delta.getDislikes()), current.expiresAtNanos)));
+    } finally {
+      epoch.incrementAndGet();
+      commitsInFlight.decrementAndGet();
+    }
+  }
+
+  /**
+   * Gets the number of reads served from the view.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Gets the number of reads that had to be loaded from the database.
+   *
+   * @return The miss count.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Gets the number of albums in the view.
+   *
+   * @return The view size.
+   */
+  public int size() {
+    return counts.size();
+  }
+
+  /**
+   * Gets the live counts of an album, removing them if they have expired.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return The counts, or null if the album is not in the view.
+   */
+  private ReviewCounts lookup(String albumId) {
+    CachedCounts cached = counts.get(albumId);
+    if (cached == null) {
+      return null;
+    }
+    if (cached.isExpired(System.nanoTime())) {
+      counts.remove(albumId, cached);
+      return null;
+    }
+    return cached.counts;
+  }
+
+  /**
+   * Makes room for one more album when the view is full: sweeps the expired entries and, if the view is still full,
+   * drops arbitrary entries.
+   */
+  private void makeRoom() {
+    if (counts.size() < maxSize) {
+      return;
+    }
+    long now = System.nanoTime();
+    counts.values().removeIf(cached -> cached.isExpired(now));
+    Iterator<String> albumIds = counts.keySet().iterator();
+    while (counts.size() >= maxSize && albumIds.hasNext()) {
+      albumIds.next();
+      albumIds.remove();
+    }
+  }
+
+  /**
+   * Adds loaded counts to the view unless a commit started since the load began, in which case they are removed
+   * again because they may predate that commit.
+   *
+   * @param albumId    The unique identifier of the album.
+   * @param loaded     The loaded counts.
+   * @param startEpoch The epoch read before the load began.
+   * @return The counts to return to the caller.
+   */
+  private ReviewCounts install(String albumId, ReviewCounts loaded, long startEpoch) {
+    if (loaded == null || epoch.get() != startEpoch) {
+      return loaded;
+    }
+    makeRoom();
+    CachedCounts entry = new CachedCounts(loaded, System.nanoTime() + ttlNanos);
+    CachedCounts current = counts.putIfAbsent(albumId, entry);
+    if (current != null) {
+      return current.counts;
+    }
+    if (epoch.get() != startEpoch) {
+      counts.remove(albumId, entry);
+    }
+    return loaded;
+  }
+}
@@ -0,0 +1,426 @@
+package review;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import model.ReviewCounts;
+import org.bson.types.ObjectId;
+
+/**
+ * A local write-ahead journal of the review counts of one partition. Every flush of the {@link ReviewAggregator} is
+ * appended as one record and forced to disk with a single fsync (group commit), and only then are its deliveries
+ * acknowledged. The review store is written afterwards, so a slow or unavailable database no longer holds back
+ * acknowledgements, and a crash loses nothing that was acknowledged.
+ *
+ * <p>Records hold the cumulative like and dislike counts that this journal has recorded for the albums in the batch.
+ * The journal has a unique writer ID, and the store is written with {@link store.ReviewStore#bulkApplyReviews}, which
+ * only adds the part of a writer's cumulative counts it has not applied yet. Replaying a record that already reached
+ * the store therefore changes nothing, and any number of journals, on any number of nodes, can count reviews of the
+ * same albums.
+ *
+ * <p>The journal keeps the cumulative counts of all its albums in memory, together with the counts it has stored.
+ * Every so many commits it writes them to a compacted snapshot and truncates the journal file. On open, the snapshot is
+ * loaded and the journal records after it are replayed; a torn record at the end of the journal, left by a crash
+ * during an append, was never acknowledged and is discarded. A journal directory is locked by the journal that opened
+ * it until it is closed.
+ *
+ * @author ambikakabra
+ */
+public class ReviewJournal implements AutoCloseable {
+  private static final int SNAPSHOT_MAGIC = 0x52564A32;
+  private static final int RECORD_HEADER_LENGTH = 4 + 4;
+  private static final int RECORD_PREFIX_LENGTH = 8 + 4;
+  private static final int ENTRY_LENGTH = AlbumKey.LENGTH + 8 + 8;
+  private static final int SNAPSHOT_ENTRY_LENGTH = AlbumKey.LENGTH + 4 * 8;
+
+  private final Path directory;
+  private final Path snapshotPath;
+  private final Path snapshotTempPath;
+  private final FileChannel journal;
+  private final FileLock lock;
+  private final String writerId;
+  private final int snapshotEvery;
+  /** The cumulative likes and dislikes of every album, followed by the likes and dislikes stored so far. */
+  private final Map<String, long[]> counts = new HashMap<>();
+  private long sequence;
+  private int commitsSinceSnapshot;
+  private boolean failed;
+
+  /**
+   * Opens the journal in a directory, creating it if necessary, and recovers the counts from the snapshot and the
+   * journal file.
+   *
+   * @param directory     The directory of the journal and snapshot files.
+   * @param snapshotEvery The number of commits after which a snapshot is written and the journal file truncated.
+   * @throws IOException If the files cannot be read or created, the snapshot is corrupt, the writer ID of a journal
+   *                     with records is missing, or the directory is locked by another journal.
+   */
+  public ReviewJournal(Path directory, int snapshotEvery) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.snapshotPath = directory.resolve("snapshot.dat");
+    this.snapshotTempPath = directory.resolve("snapshot.tmp");
+    this.snapshotEvery = Math.max(1, snapshotEvery);
+    this.journal = FileChannel.open(directory.resolve("journal.log"), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      this.lock = lock(directory);
+      this.writerId = loadWriterId(directory.resolve("writer.id"));
+      loadSnapshot();
+      replay();
+    } catch (IOException | RuntimeException e) {
+      journal.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Adds a batch of deltas to the counts and appends the new cumulative counts of its albums to the journal with one
+   * fsync.
+   *
+   * @param deltas The likes and dislikes to add, keyed by album ID.
+   * @throws IOException If the record cannot be made durable. The counts are then unchanged and the batch can be
+   *                     committed again.
+   */
+  public synchronized void commit(Map<String, ReviewCounts> deltas) throws IOException {
+    if (failed) {
+      throw new IOException("Review journal failed and must be reopened");
+    }
+    Map<String, long[]> updated = new HashMap<>();
+    for (Map.Entry<String, ReviewCounts> entry : deltas.entrySet()) {
+      if (!ObjectId.isValid(entry.getKey())) {
+        continue;
+      }
+      long[] current = counts.getOrDefault(entry.getKey(), new long[4]);
+      updated.put(entry.getKey(), new long[] {current[0] + entry.getValue().getLikes(),
+          current[1] + entry.getValue().getDislikes(), current[2], current[3]});
+    }
+    if (updated.isEmpty()) {
+      return;
+    }
+
+    ByteBuffer record = encodeRecord(sequence + 1, updated);
+    long start = journal.size();
+    try {
+      while (record.hasRemaining()) {
+        journal.write(record, start + record.position());
+      }
+      journal.force(false);
+    } catch (IOException e) {
+      discardFrom(start);
+      throw e;
+    }
+    sequence++;
+    counts.putAll(updated);
+
+    if (++commitsSinceSnapshot >= snapshotEvery) {
+      try {
+        snapshot();
+      } catch (IOException e) {
+        // The journal still holds every record; the next commit tries again.
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Gets the unique ID under which this journal writes its counts to the store.
+   *
+   * @return The writer ID.
+   */
+  public String getWriterId() {
+    return writerId;
+  }
+
+  /**
+   * Gets the cumulative counts of the albums whose counts have not all reached the store yet.
+   *
+   * @return The cumulative counts keyed by album ID.
+   */
+  public synchronized Map<String, ReviewCounts> getUnstoredCounts() {
+    Map<String, ReviewCounts> result = new HashMap<>();
+    counts.forEach((albumId, values) -> {
+      if (values[0] != values[2] || values[1] != values[3]) {
+        result.put(albumId, new ReviewCounts(values[0], values[1]));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Records that cumulative counts have been written to the store.
+   *
+   * @param stored The cumulative counts that were written, keyed by album ID.
+   * @return The counts that reached the store with this write and not before, keyed by album ID.
+   */
+  public synchronized Map<String, ReviewCounts> markStored(Map<String, ReviewCounts> stored) {
+    Map<String, ReviewCounts> added = new HashMap<>();
+    stored.forEach((albumId, cumulative) -> {
+      long[] values = counts.get(albumId);
+      if (values == null) {
+        return;
+      }
+      long likes = Math.max(0, cumulative.getLikes() - values[2]);
+      long dislikes = Math.max(0, cumulative.getDislikes() - values[3]);
+      values[2] += likes;
+      values[3] += dislikes;
+      if (likes != 0 || dislikes != 0) {
+        added.put(albumId, new ReviewCounts(likes, dislikes));
+      }
+    });
+    return added;
+  }
+
+  /**
+   * Gets the sequence number of the last committed record.
+   *
+   * @return The sequence number, 0 if nothing has been committed.
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Writes the counts to a new snapshot and truncates the journal file. The snapshot replaces the old one atomically,
+   * so a crash at any point leaves a snapshot and journal that recover the same counts.
+   *
+   * @throws IOException If the snapshot cannot be written.
+   */
+  public synchronized void snapshot() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 4 + counts.size() * SNAPSHOT_ENTRY_LENGTH + 4);
+    buffer.putInt(SNAPSHOT_MAGIC).putLong(sequence).putInt(counts.size());
+    counts.forEach((albumId, values) -> {
+      new ObjectId(albumId).putToByteBuffer(buffer);
+      buffer.putLong(values[0]).putLong(values[1]).putLong(values[2]).putLong(values[3]);
+    });
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), 0, buffer.position());
+    buffer.putInt((int) crc.getValue()).flip();
+
+    try (FileChannel channel = FileChannel.open(snapshotTempPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(snapshotTempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    // The rename must be durable before the records it replaces are truncated.
+    syncDirectory();
+    journal.truncate(0);
+    journal.force(true);
+    commitsSinceSnapshot = 0;
+  }
+
+  /**
+   * Writes a final snapshot, so the next start does not have to replay the journal, and closes the journal file, which
+   * releases the directory.
+   */
+  @Override
+  public synchronized void close() {
+    try {
+      if (!failed && commitsSinceSnapshot > 0) {
+        snapshot();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    try {
+      lock.release();
+      journal.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Encodes a journal record: its length and CRC32C, followed by the sequence number, the number of albums and the
+   * album IDs with their counts.
+   *
+   * @param recordSequence The sequence number of the record.
+   * @param updated        The new counts keyed by album ID.
+   * @return The encoded record, ready to be written.
+   */
+  private static ByteBuffer encodeRecord(long recordSequence, Map<String, long[]> updated) {
+    int bodyLength = RECORD_PREFIX_LENGTH + updated.size() * ENTRY_LENGTH;
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + bodyLength);
+    record.position(RECORD_HEADER_LENGTH);
+    record.putLong(recordSequence).putInt(updated.size());
+    updated.forEach((albumId, values) -> {
+      new ObjectId(albumId).putToByteBuffer(record);
+      record.putLong(values[0]).putLong(values[1]);
+    });
+    CRC32C crc = new CRC32C();
+    crc.update(record.array(), RECORD_HEADER_LENGTH, bodyLength);
+    record.putInt(0, bodyLength).putInt(4, (int) crc.getValue());
+    return record.flip();
+  }
+
+  /**
+   * Locks the journal directory, so a second journal cannot open it while this one is open, whether in this process
+   * or another.
+   *
+   * @param directory The journal directory.
+   * @return The lock.
+   * @throws IOException If the directory is already locked or cannot be locked.
+   */
+  private FileLock lock(Path directory) throws IOException {
+    FileLock acquired;
+    try {
+      acquired = journal.tryLock();
+    } catch (OverlappingFileLockException e) {
+      acquired = null;
+    }
+    if (acquired == null) {
+      throw new IOException("Review journal " + directory + " is already open");
+    }
+    return acquired;
+  }
+
+  /**
+   * Reads the writer ID of the journal, creating a new one for a new journal. A journal that has records but no writer
+   * ID cannot be written to the store without double counting what it wrote before, and is refused.
+   *
+   * @param path The path of the writer ID file.
+   * @return The writer ID.
+   * @throws IOException If the file cannot be read or written, or it is missing for a journal that has records.
+   */
+  private String loadWriterId(Path path) throws IOException {
+    if (Files.exists(path)) {
+      String id = Files.readString(path).trim();
+      if (!ObjectId.isValid(id)) {
+        throw new IOException("Corrupt review journal writer ID " + path);
+      }
+      return id;
+    }
+    if (journal.size() > 0 || Files.exists(snapshotPath)) {
+      throw new IOException("Review journal writer ID " + path + " is missing, but the journal has records");
+    }
+    String id = new ObjectId().toHexString();
+    Path temp = path.resolveSibling("writer.id.tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(id.getBytes(StandardCharsets.US_ASCII));
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory();
+    return id;
+  }
+
+  /**
+   * Forces the entries of the journal directory to the storage device, so a file that was created or renamed in it
+   * survives a crash.
+   *
+   * @throws IOException If the directory cannot be forced.
+   */
+  private void syncDirectory() throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Loads the snapshot, if there is one.
+   *
+   * @throws IOException If the snapshot cannot be read or fails its checksum.
+   */
+  private void loadSnapshot() throws IOException {
+    if (!Files.exists(snapshotPath)) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), 0, Math.max(0, buffer.limit() - 4));
+    if (buffer.limit() < 20 || buffer.getInt(0) != SNAPSHOT_MAGIC
+        || buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()) {
+      throw new IOException("Corrupt review snapshot " + snapshotPath);
+    }
+    buffer.position(4);
+    sequence = buffer.getLong();
+    byte[] id = new byte[AlbumKey.LENGTH];
+    for (int count = buffer.getInt(); count > 0; count--) {
+      buffer.get(id);
+      counts.put(new ObjectId(id).toHexString(),
+          new long[] {buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()});
+    }
+  }
+
+  /**
+   * Replays the journal records that come after the snapshot. Their counts may or may not have reached the store
+   * before the restart; writing them again is harmless.
+   *
+   * @throws IOException If the journal file cannot be read or truncated.
+   */
+  private void replay() throws IOException {
+    long position = 0;
+    long size = journal.size();
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+    byte[] id = new byte[AlbumKey.LENGTH];
+    while (position + RECORD_HEADER_LENGTH <= size) {
+      header.clear();
+      journal.read(header, position);
+      int bodyLength = header.getInt(0);
+      if (bodyLength < RECORD_PREFIX_LENGTH || position + RECORD_HEADER_LENGTH + bodyLength > size) {
+        break;
+      }
+      ByteBuffer body = ByteBuffer.allocate(bodyLength);
+      while (body.hasRemaining() && journal.read(body, position + RECORD_HEADER_LENGTH + body.position()) >= 0) {
+        // Reads until the body is complete.
+      }
+      CRC32C crc = new CRC32C();
+      crc.update(body.array());
+      if (header.getInt(4) != (int) crc.getValue()) {
+        break;
+      }
+      body.flip();
+      long recordSequence = body.getLong();
+      int count = body.getInt();
+      if (recordSequence > sequence) {
+        for (int i = 0; i < count; i++) {
+          body.get(id);
+          long[] values = counts.computeIfAbsent(new ObjectId(id).toHexString(), albumId -> new long[4]);
+          values[0] = body.getLong();
+          values[1] = body.getLong();
+        }
+        sequence = recordSequence;
+        commitsSinceSnapshot++;
+      }
+      position += RECORD_HEADER_LENGTH + bodyLength;
+    }
+    if (position < size) {
+      System.err.println("Discarded a torn record at the end of the review journal");
+      journal.truncate(position);
+      journal.force(true);
+    }
+  }
+
+  /**
+   * Removes a record that could not be made durable, so it is not replayed after the batch is committed again. If the
+   * journal cannot be truncated, it refuses further commits: the deliveries stay unacknowledged and are redelivered
+   * after a restart.
+   *
+   * @param start The position of the record.
+   */
+  private void discardFrom(long start) {
+    try {
+      journal.truncate(start);
+      journal.force(true);
+    } catch (IOException e) {
+      e.printStackTrace();
+      failed = true;
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package review;
+
+import factory.RabbitMQConnectionManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.bson.types.ObjectId;
+
+/**
+ * Batches review events before they are published to the review queue. Request threads add events to a bounded
+ * {@link MpscRingBuffer}, and a single publisher thread drains it into one binary message per batch. A batch is
+ * published once it holds the maximum number of events or its first event has waited for the linger time, so the
+ * cost of a publish is shared by many reviews while the added latency stays below the linger.
+ *
+ * <p>Every event gets a future that completes when its batch has been published, or confirmed by the broker in
+ * publisher-confirm mode. When the buffer is full, events are rejected or, if configured, the request thread waits
+ * for room up to a timeout.
+ *
+ * @author ambikakabra
+ */
+public class ReviewPublisher implements AutoCloseable {
+
+  /** A review waiting to be published. */
+  private static final class Event {
+    private final ObjectId albumId;
+    private final boolean like;
+    private final CompletableFuture<Void> published = new CompletableFuture<>();
+
+    private Event(ObjectId albumId, boolean like) {
+      this.albumId = albumId;
+      this.like = like;
+    }
+  }
+
+  private final MpscRingBuffer<Event> buffer;
+  private final String queueName;
+  private final int maxBatchEvents;
+  private final long lingerNanos;
+  private final boolean blockWhenFull;
+  private final long blockTimeoutNanos;
+  private final Thread publisherThread;
+  private final Event[] batch;
+  private final Consumer<Event> addToBatch = this::add;
+  private final LongAdder publishedBatches = new LongAdder();
+  private final LongAdder publishedEvents = new LongAdder();
+  private final LongAdder rejectedEvents = new LongAdder();
+  private volatile boolean publisherWaiting;
+  private volatile boolean closed;
+  private int batchSize;
+
+  /**
+   * Constructs a ReviewPublisher and starts its publisher thread.
+   *
+   * @param queueName      The name of the queue to publish to.
+   * @param bufferSize     The number of events that can wait to be published.
+   * @param maxBatchEvents The number of events that triggers a publish, at most {@link ReviewCodec#MAX_EVENTS}.
+   * @param lingerMs       The maximum time, in milliseconds, an event waits for its batch to fill.
+   * @param blockWhenFull  Whether request threads wait for room when the buffer is full instead of being rejected.
+   * @param blockTimeoutMs The maximum time, in milliseconds, a request thread waits for room.
+   */
+  public ReviewPublisher(String queueName, int bufferSize, int maxBatchEvents, long lingerMs, boolean blockWhenFull,
+      long blockTimeoutMs) {
+    this.buffer = new MpscRingBuffer<>(bufferSize);
+    this.queueName = queueName;
+    this.maxBatchEvents = Math.max(1, Math.min(maxBatchEvents, ReviewCodec.MAX_EVENTS));
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+    this.blockWhenFull = blockWhenFull;
+    this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+    this.batch = new Event[this.maxBatchEvents];
+    this.publisherThread = new Thread(this::run, "review-publisher-" + queueName);
+    this.publisherThread.setDaemon(true);
+    this.publisherThread.start();
+  }
+
+  /**
+   * Adds a review to the next batch.
+   *
+   * @param albumId The reviewed album.
+   * @param like    True for a like, false for a dislike.
+   * @return A future that completes when the review has been published, or confirmed in publisher-confirm mode.
+   * @throws RejectedExecutionException If the buffer is full, or the publisher is closed.
+   */
+  public CompletableFuture<Void> submit(ObjectId albumId, boolean like) {
+    if (closed) {
+      throw new RejectedExecutionException("Review publisher is closed");
+    }
+    Event event = new Event(albumId, like);
+    if (!buffer.offer(event) && !(blockWhenFull && offerWithTimeout(event))) {
+      rejectedEvents.increment();
+      throw new RejectedExecutionException("Review buffer is full");
+    }
+    if (publisherWaiting) {
+      LockSupport.unpark(publisherThread);
+    }
+    if (closed) {
+      // The publisher thread may have drained the buffer for the last time before the event was added.
+      awaitPublisherThread();
+      if (!publisherThread.isAlive()) {
+        event.published.completeExceptionally(new RejectedExecutionException("Review publisher is closed"));
+      }
+    }
+    return event.published;
+  }
+
+  /**
+   * Gets the number of batches published successfully.
+   *
+   * @return The batch count.
+   */
+  public long getPublishedBatches() {
+    return publishedBatches.sum();
+  }
+
+  /**
+   * Gets the number of events published successfully.
+   *
+   * @return The event count.
+   */
+  public long getPublishedEvents() {
+    return publishedEvents.sum();
+  }
+
+  /**
+   * Gets the number of events rejected because the buffer was full.
+   *
+   * @return The rejected event count.
+   */
+  public long getRejectedEvents() {
+    return rejectedEvents.sum();
+  }
+
+  /**
+   * Stops accepting events, publishes the events that are still buffered and stops the publisher thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(publisherThread);
+    awaitPublisherThread();
+  }
+
+  /**
+   * Waits for the publisher thread to publish the buffered events and stop, for up to the linger time plus five
+   * seconds.
+   */
+  private void awaitPublisherThread() {
+    try {
+      publisherThread.join(TimeUnit.NANOSECONDS.toMillis(lingerNanos) + 5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for room in the full buffer.
+   *
+   * @param event The event to add.
+   * @return True if the event was added before the timeout.
+   */
+  private boolean offerWithTimeout(Event event) {
+    long deadline = System.nanoTime() + blockTimeoutNanos;
+    while (!closed && deadline - System.nanoTime() > 0) {
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+      if (buffer.offer(event)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The publisher loop: waits for a first event, fills the batch until it is full or the linger expires, and
+   * publishes it.
+   */
+  private void run() {
+    while (!closed || !buffer.isEmpty()) {
+      buffer.drain(addToBatch, maxBatchEvents - batchSize);
+      if (batchSize == 0) {
+        await(Long.MAX_VALUE);
+        continue;
+      }
+      long deadline = System.nanoTime() + lingerNanos;
+      while (batchSize < maxBatchEvents && !closed && deadline - System.nanoTime() > 0) {
+        await(deadline);
+        buffer.drain(addToBatch, maxBatchEvents - batchSize);
+      }
+      publishBatch();
+    }
+    // Events added while the publisher was closing are failed rather than left waiting.
+    buffer.drain(event -> event.published.completeExceptionally(
+        new RejectedExecutionException("Review publisher is closed")), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Adds a drained event to the current batch.
+   *
+   * @param event The event.
+   */
+  private void add(Event event) {
+    batch[batchSize++] = event;
+  }
+
+  /**
+   * Parks the publisher thread until an event is added, the deadline passes or the publisher is closed.
+   *
+   * @param deadline The deadline as a {@link System#nanoTime()} value, or Long.MAX_VALUE to wait for an event.
+   */
+  private void await(long deadline) {
+    publisherWaiting = true;
+    if (buffer.isEmpty() && !closed) {
+      long waitNanos = deadline == Long.MAX_VALUE ? TimeUnit.MILLISECONDS.toNanos(100) : deadline - System.nanoTime();
+      if (waitNanos > 0) {
+        LockSupport.parkNanos(this, waitNanos);
+      }
+    }
+    publisherWaiting = false;
+  }
+
+  /**
+   * Encodes the current batch as one message, publishes it and resolves the events' futures.
+   */
+  private void publishBatch() {
+    int count = batchSize;
+    Event[] events = new Event[count];
+    System.arraycopy(batch, 0, events, 0, count);
+    Arrays.fill(batch, 0, count, null);
+    batchSize = 0;
+
+    ByteBuffer message = ByteBuffer.allocate(ReviewCodec.encodedLength(count));
+    ReviewCodec.writeHeader(message, count);
+    for (Event event : events) {
+      ReviewCodec.writeEvent(message, event.albumId, event.like);
+    }
+
+    CompletableFuture<Void> published;
+    try {
+      published = RabbitMQConnectionManager.publish(queueName, message.array());
+    } catch (IOException | TimeoutException | InterruptedException | RuntimeException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      published = CompletableFuture.failedFuture(e);
+    }
+    published.whenComplete((ignored, error) -> {
+      if (error == null) {
+        publishedBatches.increment();
+        publishedEvents.add(count);
+      } else {
+        error.printStackTrace();
+      }
+      for (Event event : events) {
+        if (error == null) {
+          event.published.complete(null);
+        } else {
+          event.published.completeExceptionally(error);
+        }
+      }
+    });
+  }
+}
@@ -1,40 +1,74 @@
 package servlet;
 
 import com.google.gson.Gson;
-import factory.ConnectionManager;
+import factory.AsyncConnectionManager;
+import factory.ServerConfig;
+import factory.StoreFactory;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
-import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import model.AlbumInfo;
 import model.ImageMetaData;
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileItemFactory;
+import model.StoredImage;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import store.AlbumStore;
 
 /**
  * The AlbumServlet class is a servlet for handling HTTP requests related to albums, including retrieving album information and uploading new albums with images.
  *
  * @author ambikakabra
  */
-@WebServlet(name = "AlbumServlet", value = "/albums/*")
-@MultipartConfig(
-    fileSizeThreshold = 1024 * 1024 * 10,
-    maxFileSize = 1024 * 1024 * 50,
-    maxRequestSize = 1024 * 1024 * 100
-)
+@WebServlet(name = "AlbumServlet", value = "/albums/*", asyncSupported = true)
 public class AlbumServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
+
+  /** Maximum size of an uploaded image in bytes. */
+  private static final long MAX_FILE_SIZE = 1024 * 1024 * 50;
+
+  /** Maximum size of a whole upload request in bytes. */
+  private static final long MAX_REQUEST_SIZE = 1024 * 1024 * 100;
+
+  /** Maximum size of a form field (artist, title, year) in bytes. */
+  private static final int MAX_FIELD_SIZE = 1024;
+
+  /** Maximum size of a whole batch upload request in bytes. */
+  private static final long MAX_BATCH_REQUEST_SIZE = ServerConfig.getLong("album.batch.maxRequestMb", 1024) * 1024 * 1024;
+
+  /** The number of albums of a batch upload that are saved with one insert. */
+  private static final int BATCH_CHUNK_SIZE = Math.max(1, ServerConfig.getInt("album.batch.chunkSize", 500));
+
+  /** Maximum number of album IDs in one multi-get request. */
+  private static final int MAX_MULTI_GET_IDS = ServerConfig.getInt("album.multiget.maxIds", 1000);
+
+  /** Maximum size of the ID list in the body of a multi-get request in bytes. */
+  private static final int MAX_MULTI_GET_BODY_SIZE = MAX_MULTI_GET_IDS * 32 + 2;
+
+  private static final AlbumStore albumStore = StoreFactory.getAlbumStore();
+  private static final AsyncConnectionManager asyncConnectionManager = new AsyncConnectionManager();
   private final Gson gson = new Gson();
   /**
-   * Handles GET requests for album information.
+   * Handles GET requests for album information. GET /albums/{id} returns one album, and GET /albums?ids=a,b,c returns
+   * many albums at once.
    *
    * @param request  The HTTP request.
    * @param response The HTTP response.
@@ -52,14 +86,42 @@ public class AlbumServlet extends HttpServlet {
       return;
     }
 
+    if (urlPath == null || "/".equals(urlPath)) {
+      String ids = request.getParameter("ids");
+      if (ids == null) {
+        sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid request");
+        return;
+      }
+      Set<String> albumIds = new LinkedHashSet<>();
+      for (String id : ids.split(",")) {
+        if (!id.isBlank()) {
+          albumIds.add(id.trim());
+        }
+      }
+      sendAlbumsResponse(albumIds, response);
+      return;
+    }
+
     if (!isUrlValid(urlPath)) {
       sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid request");
       return;
     }
     String albumId = urlPath.split("/")[1];
 
+    if (ServletMode.isAsync()) {
+      AsyncResponder responder = new AsyncResponder(request.startAsync(), ServletMode.getTimeoutMs(), "Request timed out");
+      asyncConnectionManager.getAlbumByIdAsync(albumId).thenAccept(albumInfo -> {
+        if (albumInfo != null) {
+          responder.respond(HttpServletResponse.SC_OK, new JSONObject(albumInfo).toString());
+        } else {
+          responder.respond(HttpServletResponse.SC_NOT_FOUND, "Key not found");
+        }
+      });
+      return;
+    }
+
     //get albumInfo from Database
-    AlbumInfo albumInfo = new ConnectionManager().getAlbumById(albumId);
+    AlbumInfo albumInfo = albumStore.getAlbumById(albumId);
     if (albumInfo != null) {
       sendAlbumInfoResponse(albumInfo, response);
     } else {
@@ -68,7 +130,8 @@ public class AlbumServlet extends HttpServlet {
   }
 
   /**
-   * Handles POST requests for uploading image and album information and returns ImageMetaData.
+   * Handles POST requests for uploading image and album information and returns ImageMetaData. POST /albums/batch
+   * uploads many albums at once, and POST /albums/lookup returns the albums whose IDs are listed in the body.
    *
    * @param request  The HTTP request.
    * @param response The HTTP response.
@@ -84,46 +147,311 @@ public class AlbumServlet extends HttpServlet {
       sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid request");
       return;
     }
+    if ("/batch".equals(request.getPathInfo())) {
+      doPostBatch(request, response);
+      return;
+    }
+    if ("/lookup".equals(request.getPathInfo())) {
+      doPostLookup(request, response);
+      return;
+    }
+
+    if (!ServletFileUpload.isMultipartContent(request)) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Request must be multipart/form-data");
+      return;
+    }
+    if (request.getContentLengthLong() > MAX_REQUEST_SIZE) {
+      sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request is too large");
+      return;
+    }
 
-    FileItemFactory factory = new DiskFileItemFactory();
-    ServletFileUpload upload = new ServletFileUpload(factory);
+    ServletFileUpload upload = new ServletFileUpload();
+    upload.setSizeMax(MAX_REQUEST_SIZE);
+    upload.setFileSizeMax(MAX_FILE_SIZE);
+    AlbumInfo albumInfo = new AlbumInfo();
+    StoredImage storedImage = null;
     try {
-      List<FileItem> items = upload.parseRequest(request);
-      byte[] imageBytes = new byte[0];
-      AlbumInfo albumInfo = new AlbumInfo();
-
-      for (FileItem item : items) {
-        if (item.isFormField()) {
-          if ("artist".equals(item.getFieldName())) {
-            albumInfo.setArtist(item.getString());
-          }
-          else if ("title".equals(item.getFieldName())) {
-            albumInfo.setTitle(item.getString());
-          }
-          else if ("year".equals(item.getFieldName())) {
-            albumInfo.setYear(item.getString());
-          }
-        } else {
-          if ("image".equals(item.getFieldName())) {
-            imageBytes = item.get();
+      FileItemIterator items = upload.getItemIterator(request);
+      while (items.hasNext()) {
+        FileItemStream item = items.next();
+        try (InputStream stream = item.openStream()) {
+          if (item.isFormField()) {
+            String value = readFormField(stream);
+            if (value == null) {
+              deleteImage(storedImage);
+              sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Form field " + item.getFieldName() + " is too long");
+              return;
+            }
+            if ("artist".equals(item.getFieldName())) {
+              albumInfo.setArtist(value);
+            }
+            else if ("title".equals(item.getFieldName())) {
+              albumInfo.setTitle(value);
+            }
+            else if ("year".equals(item.getFieldName())) {
+              albumInfo.setYear(value);
+            }
+          } else if ("image".equals(item.getFieldName()) && storedImage == null) {
+            storedImage = StoreFactory.getImageStore().save(stream);
           }
         }
       }
+    } catch (FileUploadException | IOException e) {
+      deleteImage(storedImage);
+      if (isSizeLimitExceeded(e)) {
+        sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request is too large");
+      } else {
+        sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid multipart request");
+      }
+      return;
+    }
 
-      if(albumInfo != null && validateAlbumInfo(albumInfo, imageBytes)) {
-        ImageMetaData imageMetaData = new ConnectionManager().saveAlbum(albumInfo, imageBytes);
-        if(imageMetaData != null) {
-          sendImageInfoResponse(response, new JSONObject(imageMetaData));
-        }
-        else {
-          sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while saving image and album info");
+    long imageSize = storedImage == null ? 0 : storedImage.getSize();
+    if(validateAlbumInfo(albumInfo, imageSize) && ServletMode.isAsync()) {
+      // The multipart body has been read by now; only the insert runs without holding this thread.
+      AsyncResponder responder = new AsyncResponder(request.startAsync(), ServletMode.getTimeoutMs(), "Request timed out");
+      asyncConnectionManager.saveAlbumAsync(albumInfo, storedImage).thenAccept(imageMetaData -> {
+        if (imageMetaData != null) {
+          responder.respond(HttpServletResponse.SC_OK, new JSONObject(imageMetaData).toString());
+        } else {
+          responder.respond(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while saving image and album info");
         }
+      });
+    }
+    else if(validateAlbumInfo(albumInfo, imageSize)) {
+      ImageMetaData imageMetaData = albumStore.saveAlbum(albumInfo, storedImage);
+      if(imageMetaData != null) {
+        sendImageInfoResponse(response, new JSONObject(imageMetaData));
       }
       else {
-        sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid or missing parameter! Must add artist, title, year, image");
+        sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while saving image and album info");
       }
+    }
+    else {
+      deleteImage(storedImage);
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid or missing parameter! Must add artist, title, year, image");
+    }
+  }
+
+  /**
+   * Handles POST /albums/lookup, the form of a multi-get for ID lists that are too long for a query string. The body
+   * is a JSON array of album IDs.
+   *
+   * @param request  The HTTP request.
+   * @param response The HTTP response.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void doPostLookup(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    byte[] body = request.getInputStream().readNBytes(MAX_MULTI_GET_BODY_SIZE + 1);
+    if (body.length > MAX_MULTI_GET_BODY_SIZE) {
+      sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request is too large");
+      return;
+    }
+    Set<String> albumIds = new LinkedHashSet<>();
+    try {
+      JSONArray ids = new JSONArray(new String(body, StandardCharsets.UTF_8));
+      for (int i = 0; i < ids.length(); i++) {
+        albumIds.add(ids.getString(i));
+      }
+    } catch (JSONException e) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Body must be a JSON array of album ids");
+      return;
+    }
+    sendAlbumsResponse(albumIds, response);
+  }
+
+  /**
+   * Looks up many albums with a single store query and streams them as a JSON array in the order of the IDs. Every
+   * entry is either an album or, for an ID that is not found, its albumID with an error.
+   *
+   * @param albumIds The unique identifiers of the albums, without duplicates.
+   * @param response The HTTP response.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void sendAlbumsResponse(Collection<String> albumIds, HttpServletResponse response) throws IOException {
+    if (albumIds.isEmpty()) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Missing album ids");
+      return;
+    }
+    if (albumIds.size() > MAX_MULTI_GET_IDS) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST,
+          "Too many album ids, at most " + MAX_MULTI_GET_IDS + " are allowed");
+      return;
+    }
+    Map<String, AlbumInfo> albums = albumStore.getAlbumsByIds(albumIds);
+    if (albums == null) {
+      sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while fetching albums");
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    PrintWriter writer = response.getWriter();
+    writer.write('[');
+    boolean firstEntry = true;
+    for (Map.Entry<String, AlbumInfo> album : albums.entrySet()) {
+      if (!firstEntry) {
+        writer.write(',');
+      }
+      firstEntry = false;
+      JSONObject entry = album.getValue() != null
+          ? new JSONObject(album.getValue())
+          : new JSONObject().put("albumID", album.getKey()).put("error", "Key not found");
+      writer.write(entry.toString());
+    }
+    writer.write(']');
+  }
+
+  /**
+   * Handles POST /albums/batch, which uploads many albums in one multipart request. Every album is a run of artist,
+   * title and year fields closed by its image part. Images are streamed into the image store as they arrive, and the
+   * albums are saved in chunks of {@code album.batch.chunkSize}, so neither the request nor the batch is held in
+   * memory.
+   *
+   * <p>The response is a JSON array that is streamed as the chunks are saved. Every entry carries the index of its
+   * album in the request and either the album's ID and image size or an error; an image the image store fails to
+   * save only fails its own album. If the request itself breaks off or exceeds a size limit, the
+   * albums read so far are still saved and the array ends with an entry that has only an error.
+   *
+   * @param request  The HTTP request.
+   * @param response The HTTP response.
+   * @throws IOException If an I/O error occurs.
+   */
+  private void doPostBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!ServletFileUpload.isMultipartContent(request)) {
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Request must be multipart/form-data");
+      return;
+    }
+    if (request.getContentLengthLong() > MAX_BATCH_REQUEST_SIZE) {
+      sendErrorResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request is too large");
+      return;
+    }
+
+    ServletFileUpload upload = new ServletFileUpload();
+    upload.setSizeMax(MAX_BATCH_REQUEST_SIZE);
+    upload.setFileSizeMax(MAX_FILE_SIZE);
+    FileItemIterator items;
+    try {
+      items = upload.getItemIterator(request);
     } catch (FileUploadException e) {
-      throw new RuntimeException(e);
+      sendErrorResponse(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid multipart request");
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    AlbumBatch batch = new AlbumBatch(response.getWriter());
+    AlbumInfo albumInfo = new AlbumInfo();
+    String albumError = null;
+    boolean albumStarted = false;
+    String requestError = null;
+    try {
+      while (items.hasNext()) {
+        FileItemStream item = items.next();
+        try (InputStream stream = item.openStream()) {
+          if (item.isFormField()) {
+            albumStarted = true;
+            String value = readFormField(stream);
+            if (value == null) {
+              albumError = "Form field " + item.getFieldName() + " is too long";
+            }
+            else if ("artist".equals(item.getFieldName())) {
+              albumInfo.setArtist(value);
+            }
+            else if ("title".equals(item.getFieldName())) {
+              albumInfo.setTitle(value);
+            }
+            else if ("year".equals(item.getFieldName())) {
+              albumInfo.setYear(value);
+            }
+          } else if ("image".equals(item.getFieldName())) {
+            StoredImage storedImage = saveImage(stream);
+            if (storedImage == null) {
+              batch.fail("Error while saving image");
+            } else {
+              if (albumError == null && !validateAlbumInfo(albumInfo, storedImage.getSize())) {
+                albumError = "Invalid or missing parameter! Must add artist, title, year, image";
+              }
+              if (albumError == null) {
+                batch.add(albumInfo, storedImage);
+              } else {
+                deleteImage(storedImage);
+                batch.fail(albumError);
+              }
+            }
+            albumInfo = new AlbumInfo();
+            albumError = null;
+            albumStarted = false;
+          }
+        }
+      }
+      if (albumStarted) {
+        batch.fail("Invalid or missing parameter! Must add artist, title, year, image");
+      }
+    } catch (FileUploadException | IOException e) {
+      requestError = isSizeLimitExceeded(e) ? "Request is too large" : "Invalid multipart request";
+    }
+    batch.finish(requestError);
+  }
+
+  /**
+   * Saves an image of a batch upload in the image store. Failures of the store only fail the image's album, so the
+   * rest of the batch is still read; failures to read the request itself are rethrown.
+   *
+   * @param stream The stream of the image part.
+   * @return The reference and size of the stored image, or null if the image store failed.
+   * @throws IOException If the request cannot be read.
+   */
+  private StoredImage saveImage(InputStream stream) throws IOException {
+    RequestInputStream request = new RequestInputStream(stream);
+    try {
+      return StoreFactory.getImageStore().save(request);
+    } catch (IOException | RuntimeException e) {
+      if (request.readFailure != null) {
+        throw request.readFailure;
+      }
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Reads a form field into a small buffer.
+   *
+   * @param stream The stream of the form field.
+   * @return The UTF-8 value of the field, or null if it is longer than the maximum field size.
+   * @throws IOException If an I/O error occurs.
+   */
+  private String readFormField(InputStream stream) throws IOException {
+    byte[] buffer = stream.readNBytes(MAX_FIELD_SIZE + 1);
+    if (buffer.length > MAX_FIELD_SIZE) {
+      return null;
+    }
+    return new String(buffer, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks whether an upload failed because it exceeded a size limit.
+   *
+   * @param e The exception raised while reading the upload.
+   * @return true if a size limit was exceeded; false otherwise.
+   */
+  private boolean isSizeLimitExceeded(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof FileUploadBase.SizeLimitExceededException
+          || cause instanceof FileUploadBase.FileSizeLimitExceededException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Deletes an image that was stored for a request that could not be completed.
+   *
+   * @param storedImage The stored image, or null if no image was stored.
+   */
+  private void deleteImage(StoredImage storedImage) {
+    if (storedImage != null) {
+      albumStore.deleteImageQuietly(storedImage.getImageId());
     }
   }
 
@@ -131,11 +459,11 @@ public class AlbumServlet extends HttpServlet {
    * Validates the completeness of album information and image data.
    *
    * @param album The AlbumInfo object to be validated.
-   * @param imageBytes The binary image data to be validated.
+   * @param imageSize The size of the uploaded image in bytes.
    * @return true if the album information and image data are complete and valid; false otherwise.
    */
-  private boolean validateAlbumInfo(AlbumInfo album, byte[] imageBytes) {
-    return album.getArtist() != null && album.getTitle() != null && album.getYear() != null && imageBytes.length != 0;
+  private boolean validateAlbumInfo(AlbumInfo album, long imageSize) {
+    return album.getArtist() != null && album.getTitle() != null && album.getYear() != null && imageSize != 0;
   }
 
   /**
@@ -189,6 +517,143 @@ public class AlbumServlet extends HttpServlet {
     response.getWriter().write(jsonObject.toString());
   }
 
+  /**
+   * Collects the albums of a batch upload, saves them in chunks and streams the result of every album as an entry of
+   * a JSON array. Albums that fail before they are saved are reported right away, so the entries are in the order the
+   * albums are resolved rather than the order of the request.
+   */
+  private static final class AlbumBatch {
+    private final PrintWriter writer;
+    private final List<AlbumInfo> albumInfos = new ArrayList<>(BATCH_CHUNK_SIZE);
+    private final List<StoredImage> storedImages = new ArrayList<>(BATCH_CHUNK_SIZE);
+    private final List<Integer> indexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+    private int nextIndex;
+    private boolean firstEntry = true;
+
+    /**
+     * Constructs an AlbumBatch and starts the JSON array.
+     *
+     * @param writer The writer of the response.
+     */
+    private AlbumBatch(PrintWriter writer) {
+      this.writer = writer;
+      writer.write('[');
+    }
+
+    /**
+     * Adds a valid album, saving the pending albums once a chunk is full.
+     *
+     * @param albumInfo   The album information.
+     * @param storedImage The reference and size of the album's image.
+     */
+    private void add(AlbumInfo albumInfo, StoredImage storedImage) {
+      albumInfos.add(albumInfo);
+      storedImages.add(storedImage);
+      indexes.add(nextIndex++);
+      if (albumInfos.size() >= BATCH_CHUNK_SIZE) {
+        save();
+      }
+    }
+
+    /**
+     * Reports an album that cannot be saved.
+     *
+     * @param error The reason.
+     */
+    private void fail(String error) {
+      write(new JSONObject().put("index", nextIndex++).put("error", error));
+    }
+
+    /**
+     * Saves the pending albums and ends the JSON array.
+     *
+     * @param error The reason the request broke off, or null if it was read completely.
+     */
+    private void finish(String error) {
+      save();
+      if (error != null) {
+        write(new JSONObject().put("error", error));
+      }
+      writer.write(']');
+      writer.flush();
+    }
+
+    /**
+     * Saves the pending albums with one insert and streams their results to the client.
+     */
+    private void save() {
+      if (albumInfos.isEmpty()) {
+        return;
+      }
+      List<ImageMetaData> saved = albumStore.saveAlbums(albumInfos, storedImages);
+      for (int i = 0; i < saved.size(); i++) {
+        ImageMetaData imageMetaData = saved.get(i);
+        write(imageMetaData == null
+            ? new JSONObject().put("index", indexes.get(i)).put("error", "Error while saving image and album info")
+            : new JSONObject(imageMetaData).put("index", indexes.get(i)));
+      }
+      albumInfos.clear();
+      storedImages.clear();
+      indexes.clear();
+      writer.flush();
+    }
+
+    private void write(JSONObject entry) {
+      if (!firstEntry) {
+        writer.write(',');
+      }
+      firstEntry = false;
+      writer.write(entry.toString());
+    }
+  }
+
+  /**
+   * An input stream over a part of the request that remembers the first error raised while reading it, so the errors
+   * of the request can be told apart from those of the store the part is copied to.
+   */
+  private static final class RequestInputStream extends FilterInputStream {
+    private IOException readFailure;
+
+    /**
+     * Constructs a RequestInputStream around the stream of a part.
+     *
+     * @param in The stream of the part.
+     */
+    private RequestInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (IOException e) {
+        readFailure = e;
+        throw e;
+      }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      try {
+        return super.read(buffer, offset, length);
+      } catch (IOException e) {
+        readFailure = e;
+        throw e;
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      try {
+        return super.skip(n);
+      } catch (IOException e) {
+        readFailure = e;
+        throw e;
+      }
+    }
+  }
+
   /**
    * Enumeration representing different URL endpoints.
    */
@@ -0,0 +1,89 @@
+package servlet;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Completes an asynchronous request exactly once, either with the response produced by a callback or with an error
+ * when the request times out. Responses are written on a container thread, never on the thread of the callback.
+ *
+ * @author ambikakabra
+ */
+class AsyncResponder {
+  private final AsyncContext asyncContext;
+  private final AtomicBoolean responded = new AtomicBoolean();
+
+  /**
+   * Constructs an AsyncResponder. It must be created while the request's original dispatch is still running.
+   *
+   * @param asyncContext   The asynchronous context of the request.
+   * @param timeoutMs      The time, in milliseconds, after which the request fails.
+   * @param timeoutMessage The message written with status 500 when the request times out.
+   */
+  AsyncResponder(AsyncContext asyncContext, long timeoutMs, String timeoutMessage) {
+    this.asyncContext = asyncContext;
+    asyncContext.setTimeout(timeoutMs);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        write(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, timeoutMessage);
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) { }
+
+      @Override
+      public void onError(AsyncEvent event) { }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) { }
+    });
+  }
+
+  /**
+   * Writes the status and message of the request on a container thread and completes it, unless it has already been
+   * completed.
+   *
+   * @param status  The HTTP response status code.
+   * @param message The HTTP response message.
+   */
+  void respond(int status, String message) {
+    start(() -> write(status, message));
+  }
+
+  /**
+   * Runs a task on a container thread, unless the request has already been completed.
+   *
+   * @param task The task to run.
+   */
+  void start(Runnable task) {
+    if (!responded.get()) {
+      asyncContext.start(task);
+    }
+  }
+
+  /**
+   * Writes the status and message of the request and completes it, unless it has already been completed.
+   *
+   * @param status  The HTTP response status code.
+   * @param message The HTTP response message.
+   */
+  private void write(int status, String message) {
+    if (!responded.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+      response.setStatus(status);
+      response.getWriter().write(message);
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      asyncContext.complete();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package servlet;
+
+import factory.AsyncConnectionManager;
+import factory.ConnectionHelper;
+import factory.MongoSchema;
+import factory.RabbitMQConnectionManager;
+import factory.ServerConfig;
+import factory.StoreFactory;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Registers the servlet context init parameters as server settings and ensures the MongoDB indexes before any servlet
+ * is initialized, and closes the shared RabbitMQ connection and the shared MongoDB clients or the embedded storage
+ * engine when the application is undeployed.
+ *
+ * @author ambikakabra
+ */
+public class ConfigContextListener implements ServletContextListener {
+
+  /**
+   * Copies every context init parameter into the server configuration and, unless the embedded storage engine is
+   * selected, ensures the MongoDB indexes.
+   *
+   * @param event The servlet context event.
+   */
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    Map<String, String> settings = new HashMap<>();
+    Enumeration<String> names = context.getInitParameterNames();
+    while (names.hasMoreElements()) {
+      String name = names.nextElement();
+      settings.put(name, context.getInitParameter(name));
+    }
+    ServerConfig.putAll(settings);
+    if (!StoreFactory.isEmbedded()) {
+      MongoSchema.ensureIndexes();
+    }
+  }
+
+  /**
+   * Closes the shared RabbitMQ connection and its delivery executor, and the shared MongoDB clients, or the embedded
+   * storage engine when it is selected.
+   *
+   * @param event The servlet context event.
+   */
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    RabbitMQConnectionManager.close();
+    if (StoreFactory.isEmbedded()) {
+      StoreFactory.close();
+      return;
+    }
+    AsyncConnectionManager.close();
+    ConnectionHelper.close();
+  }
+}
@@ -0,0 +1,126 @@
+package servlet;
+
+import factory.AlbumCache;
+import factory.AsyncConnectionManager;
+import factory.ConnectionHelper;
+import factory.ConnectionManager;
+import factory.MongoPoolStats;
+import factory.RabbitMQConnectionManager;
+import factory.StoreFactory;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+import review.ReviewConsumerGroup;
+import review.ReviewCountView;
+import review.ReviewPublisher;
+import store.EmbeddedStore;
+
+/**
+ * The MetricsServlet class reports the MongoDB connection pool (or embedded storage engine), album cache, review
+ * count view and RabbitMQ channel pool statistics as JSON, so pool queueing can be observed under load.
+ *
+ * @author ambikakabra
+ */
+@WebServlet(name = "MetricsServlet", value = "/metrics")
+public class MetricsServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Handles GET requests for the current statistics.
+   *
+   * @param request  The HTTP request.
+   * @param response The HTTP response.
+   * @throws IOException If an I/O error occurs.
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    AlbumCache albumCache = ConnectionManager.getAlbumCache();
+    JSONObject storage = StoreFactory.isEmbedded() ? createEmbeddedJson() : createMongoJson();
+    JSONObject cache = new JSONObject()
+        .put("size", albumCache.size())
+        .put("hits", albumCache.getHitCount())
+        .put("misses", albumCache.getMissCount())
+        .put("evictions", albumCache.getEvictionCount());
+    ReviewCountView reviewCountView = ReviewServlet.getReviewCountView();
+    JSONObject reviewCounts = new JSONObject()
+        .put("size", reviewCountView.size())
+        .put("hits", reviewCountView.getHitCount())
+        .put("misses", reviewCountView.getMissCount());
+    ReviewConsumerGroup reviewConsumers = ReviewServlet.getReviewConsumers();
+    JSONObject rabbitmq = new JSONObject()
+        .put("borrowedChannels", RabbitMQConnectionManager.getChannelPool().getBorrowedCount())
+        .put("partitions", RabbitMQConnectionManager.getPartitionCount())
+        .put("consumedReviews", reviewConsumers.getRecordedEvents())
+        .put("reviewWriteOps", reviewConsumers.getWriteOps());
+    ReviewPublisher[] reviewPublishers = ReviewServlet.getReviewPublishers();
+    if (reviewPublishers != null) {
+      long publishedBatches = 0;
+      long publishedReviews = 0;
+      long rejectedReviews = 0;
+      for (ReviewPublisher reviewPublisher : reviewPublishers) {
+        publishedBatches += reviewPublisher.getPublishedBatches();
+        publishedReviews += reviewPublisher.getPublishedEvents();
+        rejectedReviews += reviewPublisher.getRejectedEvents();
+      }
+      rabbitmq.put("publishedBatches", publishedBatches)
+          .put("publishedReviews", publishedReviews)
+          .put("rejectedReviews", rejectedReviews);
+    }
+
+    response.setContentType("application/json");
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.getWriter().write(new JSONObject()
+        .put(StoreFactory.isEmbedded() ? "embedded" : "mongo", storage)
+        .put("albumCache", cache)
+        .put("reviewCountView", reviewCounts)
+        .put("rabbitmq", rabbitmq)
+        .toString());
+  }
+
+  /**
+   * Creates the statistics of the shared MongoDB client, with those of the reactive client, which has its own pool,
+   * under "async".
+   *
+   * @return The MongoDB statistics.
+   */
+  private JSONObject createMongoJson() {
+    return createPoolJson(ConnectionHelper.getPoolStats())
+        .put("async", createPoolJson(AsyncConnectionManager.getPoolStats()));
+  }
+
+  /**
+   * Creates the statistics of one MongoDB client.
+   *
+   * @param poolStats The pool statistics of the client.
+   * @return The client statistics.
+   */
+  private JSONObject createPoolJson(MongoPoolStats poolStats) {
+    return new JSONObject()
+        .put("connections", poolStats.getConnections())
+        .put("checkedOut", poolStats.getCheckedOut())
+        .put("checkOuts", poolStats.getCheckOuts())
+        .put("checkOutFailures", poolStats.getCheckOutFailures())
+        .put("meanCheckOutWaitMs", poolStats.getMeanCheckOutWaitMs())
+        .put("maxCheckOutWaitMs", poolStats.getMaxCheckOutWaitMs())
+        .put("commands", poolStats.getCommands())
+        .put("failedCommands", poolStats.getFailedCommands())
+        .put("meanCommandMs", poolStats.getMeanCommandMs());
+  }
+
+  /**
+   * Creates the statistics of the embedded storage engine.
+   *
+   * @return The embedded engine statistics.
+   */
+  private JSONObject createEmbeddedJson() {
+    EmbeddedStore store = StoreFactory.getEmbeddedStore();
+    return new JSONObject()
+        .put("albums", store.getAlbumCount())
+        .put("reviewedAlbums", store.getReviewedAlbumCount())
+        .put("logBytes", store.getLogSize())
+        .put("indexBytes", store.getIndexMemoryBytes());
+  }
+}
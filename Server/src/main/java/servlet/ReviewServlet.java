@@ -1,98 +1,192 @@
 package servlet;
 
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.DeliverCallback;
-import com.rabbitmq.client.Delivery;
-import factory.ConnectionManager;
+import factory.AsyncConnectionManager;
 import factory.RabbitMQConnectionManager;
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import javax.servlet.*;
 import javax.servlet.http.*;
 import javax.servlet.annotation.*;
 import java.io.IOException;
-import model.AlbumInfo;
+import java.nio.file.Path;
+import factory.ServerConfig;
+import factory.StoreFactory;
 import model.AlbumReviews;
+import model.ReviewCounts;
+import org.json.JSONObject;
+import org.bson.types.ObjectId;
+import review.ReviewCodec;
+import review.ReviewConsumerGroup;
+import review.ReviewCountView;
+import review.ReviewPublisher;
+import store.AlbumStore;
+import store.ReviewStore;
 
 /**
  * Servlet for handling album reviews using RabbitMQ for communication.
  *
  * @author ambikakabra
  */
-@WebServlet(name = "ReviewServlet", value = "/review/*")
+@WebServlet(name = "ReviewServlet", value = "/review/*", asyncSupported = true)
 public class ReviewServlet extends HttpServlet {
 
-    /** Number of threads for handling RabbitMQ message delivery. */
-    private static final int NUM_THREADS = 20;
+    /**
+     * Whether the review consumers run inside this servlet. When they run in a separate
+     * {@link review.ReviewConsumerApp} process, review counts are read from MongoDB on every request because this node
+     * never sees the commits.
+     */
+    private static final boolean CONSUMER_EMBEDDED = ServerConfig.getBoolean("review.consumer.embedded", true);
+
+    /** Number of consumer workers per review queue partition, each with its own RabbitMQ channel. */
+    private static final int NUM_THREADS = ServerConfig.getInt("review.consumer.workers", 20);
+
+    /** Maximum number of unacknowledged messages per consumer channel. */
+    private static final int CONSUMER_PREFETCH = ServerConfig.getInt("review.consumer.prefetch", 250);
+
+    /** Number of pending review events of a partition (the batch size) that triggers an early flush to MongoDB. */
+    private static final int FLUSH_MAX_EVENTS = ServerConfig.getInt("review.flush.maxEvents", 1000);
+
+    /** Maximum time (the linger), in milliseconds, a review event is held in memory before it is flushed to MongoDB. */
+    private static final long FLUSH_INTERVAL_MS = ServerConfig.getLong("review.flush.intervalMs", 200);
+
+    /** Maximum time, in milliseconds, a request waits for the broker to confirm its review in publisher-confirm mode. */
+    private static final long CONFIRM_TIMEOUT_MS = ServerConfig.getLong("rabbitmq.publisher.confirmTimeoutMs", 5000);
+
+    /** Whether reviews are batched into one message per batch before they are published. */
+    private static final boolean BATCH_ENABLED = ServerConfig.getBoolean("review.batch.enabled", true);
+
+    /** Whether every flush is committed to a local journal, and acknowledged, before the counts are written. */
+    private static final boolean JOURNAL_ENABLED = ServerConfig.getBoolean("review.journal.enabled", false);
+
+    /** Directory of the review journals, one subdirectory per partition. */
+    private static final String JOURNAL_DIR = ServerConfig.getString("review.journal.dir",
+        Path.of(System.getProperty("java.io.tmpdir"), "review-journal").toString());
+
+    /** Number of journal commits after which a partition's journal writes a snapshot and truncates itself. */
+    private static final int JOURNAL_SNAPSHOT_EVERY = ServerConfig.getInt("review.journal.snapshotEvery", 1000);
+
+    /** Number of reviews per partition that can wait to be published before requests are rejected with 429 or blocked. */
+    private static final int BATCH_BUFFER_SIZE = ServerConfig.getInt("review.batch.bufferSize", 65536);
+
+    /** Number of reviews that triggers the publish of a batch. */
+    private static final int BATCH_MAX_EVENTS = ServerConfig.getInt("review.batch.maxEvents", 500);
+
+    /** Maximum time (the linger), in milliseconds, a review waits for its batch to fill before it is published. */
+    private static final long BATCH_LINGER_MS = ServerConfig.getLong("review.batch.lingerMs", 5);
+
+    /** Whether requests wait for room when the batch buffer is full, instead of failing with 429. */
+    private static final boolean BATCH_BLOCK_WHEN_FULL = ServerConfig.getBoolean("review.batch.blockWhenFull", false);
 
-    /** Basic Quality of Service (QoS) for RabbitMQ channels. */
-    private static final int BASIC_QOS = 50000;
+    /** Maximum time, in milliseconds, a request waits for room in the full batch buffer. */
+    private static final long BATCH_BLOCK_TIMEOUT_MS = ServerConfig.getLong("review.batch.blockTimeoutMs", 1000);
 
-    /** Default RabbitMQ queue name for album reviews. */
-    private static final String QUEUE_NAME = "HW3";
-    private static final ConnectionManager connectionManager = new ConnectionManager();
-    private static final Channel channel = RabbitMQConnectionManager.getChannel();
+    /** Marker for a review counts lookup of an album that does not exist. */
+    private static final ReviewCounts NOT_FOUND = new ReviewCounts(-1, -1);
+
+    private static final AlbumStore albumStore = StoreFactory.getAlbumStore();
+    private static final ReviewStore reviewStore = StoreFactory.getReviewStore();
+    private static final AsyncConnectionManager asyncConnectionManager = new AsyncConnectionManager();
+    private static final ReviewCountView reviewCountView = new ReviewCountView(
+        ServerConfig.getInt("review.view.maxSize", 100000), ServerConfig.getLong("review.view.ttlMs", 5000));
+    private static final ReviewConsumerGroup reviewConsumers = new ReviewConsumerGroup(reviewStore,
+        reviewCountView, NUM_THREADS, CONSUMER_PREFETCH, FLUSH_MAX_EVENTS, FLUSH_INTERVAL_MS,
+        JOURNAL_ENABLED ? Path.of(JOURNAL_DIR) : null, JOURNAL_SNAPSHOT_EVERY);
+    private static final ReviewPublisher[] reviewPublishers = createPublishers();
 
     /**
-     * Initializes the servlet by setting up RabbitMQ channels and message delivery threads.
+     * Initializes the servlet by declaring the review queues and, unless they run in a separate process, starting the
+     * manual-ack review consumers of all partitions.
      *
      * @throws ServletException If an error occurs during servlet initialization.
      */
     @Override
     public void init() throws ServletException {
         super.init();
-        ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
-
         try {
-            final Channel channel = RabbitMQConnectionManager.getNewConnection().createChannel();
-            channel.queueDeclare(QUEUE_NAME, false, false, false, null);
-            final DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-                try {
-                    handleDelivery(delivery);
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
-                }
-            };
-            channel.basicQos(BASIC_QOS);
-
-            for (int i = 0; i < NUM_THREADS; i++) {
-                executorService.submit(() -> {
-                    try {
-                        channel.basicConsume(QUEUE_NAME, true, deliverCallback, consumerTag -> {});
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                });
+            RabbitMQConnectionManager.declareReviewQueues();
+            if (CONSUMER_EMBEDDED) {
+                reviewConsumers.start();
             }
         } catch (IOException | TimeoutException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace();
         }
+    }
 
-        // Shutdown the executor when it's no longer needed
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            executorService.shutdown();
-            try {
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    /**
+     * Publishes the batched reviews, stops the consumers and flushes the review events that are still held in memory
+     * when the servlet is taken out of service.
+     */
+    @Override
+    public void destroy() {
+        if (reviewPublishers != null) {
+            for (ReviewPublisher reviewPublisher : reviewPublishers) {
+                reviewPublisher.close();
             }
-        }));
+        }
+        reviewConsumers.close();
+        super.destroy();
     }
 
     /**
-     * Handles the delivery of RabbitMQ messages and updates album reviews accordingly.
+     * Handles HTTP GET requests for the like and dislike counts of an album. With embedded consumers, counts are
+     * served from the in-memory review count view and read from MongoDB only when the album is not in the view.
      *
-     * @param delivery The RabbitMQ message delivery.
-     * @throws UnsupportedEncodingException If the message encoding is not supported.
+     * @param request  The HTTP request.
+     * @param response The HTTP response.
+     * @throws IOException If an error occurs during I/O operations.
      */
-    private void handleDelivery(Delivery delivery) throws UnsupportedEncodingException {
-        String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
-        String[] messageParts = message.split(",");
-        new ConnectionManager().updateReviews(messageParts);
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        String url = request.getPathInfo();
+        String[] urlParts = url == null ? new String[0] : url.split("/");
+
+        if (urlParts.length != 2 || urlParts[1].isEmpty()) {
+            response.setStatus(400);
+            response.getWriter().write("Invalid inputs");
+            return;
+        }
+
+        String id = urlParts[1];
+        if (ServletMode.isAsync()) {
+            AsyncResponder responder = new AsyncResponder(request.startAsync(), ServletMode.getTimeoutMs(),
+                "Review counts lookup timed out");
+            asyncConnectionManager.albumExistsAsync(id).thenCompose(exists -> exists
+                    ? getReviewCountsAsync(id)
+                    : CompletableFuture.completedFuture(NOT_FOUND))
+                .thenAccept(counts -> {
+                    if (counts == NOT_FOUND) {
+                        responder.respond(404, "Album not found");
+                    } else if (counts == null) {
+                        responder.respond(500, "Review counts unavailable");
+                    } else {
+                        responder.respond(200, createCountsJson(counts));
+                    }
+                });
+            return;
+        }
+
+        if (!albumStore.albumExists(id)) {
+            response.setStatus(404);
+            response.getWriter().write("Album not found");
+            return;
+        }
+        ReviewCounts counts = CONSUMER_EMBEDDED
+            ? reviewCountView.get(id, reviewStore::getReviewCounts)
+            : reviewStore.getReviewCounts(id);
+        if (counts == null) {
+            response.setStatus(500);
+            response.getWriter().write("Review counts unavailable");
+            return;
+        }
+        response.setStatus(200);
+        response.getWriter().write(createCountsJson(counts));
     }
 
     /**
@@ -115,33 +209,194 @@ public class ReviewServlet extends HttpServlet {
         }
 
         String id = urlParts[2];
+        AlbumReviews albumReviews = new AlbumReviews(id, urlParts[1]);
 
-        AlbumInfo albumInfo = new ConnectionManager().getAlbumById(id);
-        if (albumInfo == null) {
+        if (ServletMode.isAsync()) {
+            AsyncResponder responder = new AsyncResponder(request.startAsync(), CONFIRM_TIMEOUT_MS, "Review was not confirmed");
+            asyncConnectionManager.albumExistsAsync(id).thenAccept(exists -> {
+                if (exists) {
+                    responder.start(() -> publishAndRespond(albumReviews, responder));
+                } else {
+                    responder.respond(404, "Album not found");
+                }
+            });
+            return;
+        }
+
+        if (!albumStore.albumExists(id)) {
             response.setStatus(404);
             response.getWriter().write("Album not found");
             return;
         }
 
-        AlbumReviews albumReviews = new AlbumReviews(id, urlParts[1]);
-        Channel channel = RabbitMQConnectionManager.getChannel();
+        CompletableFuture<Void> confirmation;
+        try {
+            confirmation = publish(albumReviews);
+        } catch (RejectedExecutionException e) {
+            response.setStatus(429);
+            response.getWriter().write("Too many pending reviews");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setStatus(503);
+            response.getWriter().write("Review queue unavailable");
+            return;
+        } catch (TimeoutException | IOException e) {
+            response.setStatus(503);
+            response.getWriter().write("Review queue unavailable");
+            return;
+        }
+
+        if (confirmation.isDone() && !confirmation.isCompletedExceptionally()) {
+            response.setStatus(201);
+            response.getWriter().write("Write successful");
+        } else if (request.isAsyncSupported()) {
+            respondWhenConfirmed(new AsyncResponder(request.startAsync(), CONFIRM_TIMEOUT_MS, "Review was not confirmed"),
+                confirmation);
+        } else {
+            try {
+                confirmation.get(CONFIRM_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                response.setStatus(201);
+                response.getWriter().write("Write successful");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.setStatus(500);
+                response.getWriter().write("Review was not confirmed");
+            } catch (ExecutionException | TimeoutException e) {
+                response.setStatus(500);
+                response.getWriter().write("Review was not confirmed");
+            }
+        }
+    }
+
+    /**
+     * Publishes a review for an asynchronous request and responds once it is published, or confirmed in
+     * publisher-confirm mode.
+     *
+     * @param albumReviews The album reviews information.
+     * @param responder    The responder of the asynchronous request.
+     */
+    private void publishAndRespond(AlbumReviews albumReviews, AsyncResponder responder) {
+        try {
+            respondWhenConfirmed(responder, publish(albumReviews));
+        } catch (RejectedExecutionException e) {
+            responder.respond(429, "Too many pending reviews");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responder.respond(503, "Review queue unavailable");
+        } catch (TimeoutException | IOException e) {
+            responder.respond(503, "Review queue unavailable");
+        }
+    }
+
+    /**
+     * Completes an asynchronous review request once the broker has confirmed the review, without holding a container
+     * thread while waiting.
+     *
+     * @param responder    The responder of the asynchronous request.
+     * @param confirmation The future that completes when the review is confirmed.
+     */
+    private void respondWhenConfirmed(AsyncResponder responder, CompletableFuture<Void> confirmation) {
+        confirmation.whenComplete((ignored, error) -> {
+            if (error == null) {
+                responder.respond(201, "Write successful");
+            } else {
+                responder.respond(500, "Review was not confirmed");
+            }
+        });
+    }
+
+    /**
+     * Starts reading the review counts of an album, from the review count view when the consumers are embedded.
+     *
+     * @param albumId The unique identifier of the album.
+     * @return A future of the like and dislike counts, or of null if they cannot be read.
+     */
+    private CompletableFuture<ReviewCounts> getReviewCountsAsync(String albumId) {
+        if (CONSUMER_EMBEDDED) {
+            return reviewCountView.getAsync(albumId, asyncConnectionManager::getReviewCountsAsync);
+        }
+        return asyncConnectionManager.getReviewCountsAsync(albumId);
+    }
 
-        String json = createJson(albumReviews);
-        channel.basicPublish("", QUEUE_NAME, null, json.getBytes());
+    /**
+     * Gets the review count view served by this servlet.
+     *
+     * @return The review count view.
+     */
+    static ReviewCountView getReviewCountView() {
+        return reviewCountView;
+    }
 
-        response.setStatus(201);
-        response.getWriter().write("Write successful");
+    /**
+     * Creates the JSON response body for the review counts of an album.
+     *
+     * @param counts The like and dislike counts.
+     * @return The JSON representation of the counts.
+     */
+    private String createCountsJson(ReviewCounts counts) {
+        return new JSONObject()
+            .put("likes", counts.getLikes())
+            .put("dislikes", counts.getDislikes())
+            .toString();
     }
 
     /**
-     * Creates a JSON representation of the album reviews based on user actions.
+     * Publishes a review to the queue of the album's partition, through the partition's batching publisher when
+     * batching is enabled and as a message of its own otherwise. The album must exist, so its ID is a valid ObjectId.
      *
      * @param albumReviews The album reviews information.
-     * @return The JSON representation of the album reviews.
+     * @return A future that completes when the review is published, or confirmed in publisher-confirm mode.
+     * @throws RejectedExecutionException If the batch buffer is full.
+     * @throws TimeoutException           If no channel is available to publish the review.
+     * @throws InterruptedException       If the thread is interrupted while waiting for a channel.
+     * @throws IOException                If the review cannot be published.
+     */
+    private CompletableFuture<Void> publish(AlbumReviews albumReviews)
+        throws TimeoutException, InterruptedException, IOException {
+        ObjectId albumId = new ObjectId(albumReviews.getAlbumId());
+        boolean like = albumReviews.getLikeOrNot().equals("like");
+        int partition = RabbitMQConnectionManager.partitionOf(albumId);
+        if (reviewPublishers != null) {
+            return reviewPublishers[partition].submit(albumId, like);
+        }
+        return RabbitMQConnectionManager.publish(RabbitMQConnectionManager.getQueueName(partition),
+            ReviewCodec.encode(albumId, like));
+    }
+
+    /**
+     * Creates one batching publisher per review queue partition, so batches never mix partitions.
+     *
+     * @return The publishers indexed by partition, or null if batching is disabled.
+     */
+    private static ReviewPublisher[] createPublishers() {
+        if (!BATCH_ENABLED) {
+            return null;
+        }
+        ReviewPublisher[] publishers = new ReviewPublisher[RabbitMQConnectionManager.getPartitionCount()];
+        for (int partition = 0; partition < publishers.length; partition++) {
+            publishers[partition] = new ReviewPublisher(RabbitMQConnectionManager.getQueueName(partition),
+                BATCH_BUFFER_SIZE, BATCH_MAX_EVENTS, BATCH_LINGER_MS, BATCH_BLOCK_WHEN_FULL, BATCH_BLOCK_TIMEOUT_MS);
+        }
+        return publishers;
+    }
+
+    /**
+     * Gets the batching publishers of this servlet.
+     *
+     * @return The review publishers indexed by partition, or null if batching is disabled.
+     */
+    static ReviewPublisher[] getReviewPublishers() {
+        return reviewPublishers;
+    }
+
+    /**
+     * Gets the review consumers of this servlet.
+     *
+     * @return The review consumer group.
      */
-    private String createJson(AlbumReviews albumReviews) {
-        int value = albumReviews.getLikeOrNot().equals("like") ? 1 : -1;
-        return albumReviews.getAlbumId() + "," + value;
+    static ReviewConsumerGroup getReviewConsumers() {
+        return reviewConsumers;
     }
 
     /**
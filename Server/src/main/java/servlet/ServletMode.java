@@ -0,0 +1,39 @@
+package servlet;
+
+import factory.ServerConfig;
+import factory.StoreFactory;
+
+/**
+ * Selects, at deploy time, whether the servlets handle requests synchronously or asynchronously. The mode is read
+ * from the "servlet.mode" setting, which is either "sync" (the default) or "async". The asynchronous mode uses the
+ * reactive MongoDB driver, so it only applies to the "mongo" storage engine; the embedded engine never waits on the
+ * network and always runs synchronously.
+ *
+ * @author ambikakabra
+ */
+final class ServletMode {
+  private static final boolean ASYNC = "async".equalsIgnoreCase(ServerConfig.getString("servlet.mode", "sync"))
+      && !StoreFactory.isEmbedded();
+  private static final long TIMEOUT_MS = ServerConfig.getLong("servlet.async.timeoutMs", 10000);
+
+  // Private constructor to prevent instantiation
+  private ServletMode() { }
+
+  /**
+   * Checks whether the servlets run in asynchronous mode.
+   *
+   * @return True if "servlet.mode" is "async" and the storage engine is "mongo".
+   */
+  static boolean isAsync() {
+    return ASYNC;
+  }
+
+  /**
+   * Gets the time after which an asynchronous request fails, from the "servlet.async.timeoutMs" setting.
+   *
+   * @return The timeout in milliseconds.
+   */
+  static long getTimeoutMs() {
+    return TIMEOUT_MS;
+  }
+}
@@ -0,0 +1,97 @@
+package store;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import model.AlbumInfo;
+import model.ImageMetaData;
+import model.StoredImage;
+
+/**
+ * Stores album metadata. Implementations report failures by logging them and returning null or false, so the servlets
+ * can answer with an error status instead of handling storage exceptions.
+ * @author ambikakabra
+ */
+public interface AlbumStore {
+
+  /**
+   * Retrieves album information using its unique ID.
+   *
+   * @param albumId The unique identifier of the album to retrieve.
+   * @return An AlbumInfo object representing the album's information, or null if the album is not found.
+   */
+  AlbumInfo getAlbumById(String albumId);
+
+  /**
+   * Retrieves many albums at once. This implementation looks the albums up one at a time; stores that can resolve them
+   * with a single query override it.
+   *
+   * @param albumIds The unique identifiers of the albums to retrieve.
+   * @return The albums by ID in the order of the IDs, with null for the albums that are not found, or null if the
+   *     albums could not be retrieved.
+   */
+  default Map<String, AlbumInfo> getAlbumsByIds(Collection<String> albumIds) {
+    Map<String, AlbumInfo> albums = new LinkedHashMap<>();
+    for (String albumId : albumIds) {
+      albums.put(albumId, getAlbumById(albumId));
+    }
+    return albums;
+  }
+
+  /**
+   * Checks whether an album exists.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return True if the album exists, false if it does not or cannot be checked.
+   */
+  boolean albumExists(String albumId);
+
+  /**
+   * Saves album information and streams the associated image into the image store.
+   *
+   * @param albumInfo An AlbumInfo object containing information about the album to be saved.
+   * @param image The image content, read to its end but not closed.
+   * @return An ImageMetaData object containing the unique ID of the saved album and the size of the image, or null if
+   *     the album could not be saved.
+   */
+  ImageMetaData saveAlbum(AlbumInfo albumInfo, InputStream image);
+
+  /**
+   * Saves album information for an image that is already in the image store. If the album cannot be saved, the image
+   * is deleted again.
+   *
+   * @param albumInfo An AlbumInfo object containing information about the album to be saved.
+   * @param storedImage The reference and size of the album's image.
+   * @return An ImageMetaData object containing the unique ID of the saved album and the size of the image, or null if
+   *     the album could not be saved.
+   */
+  ImageMetaData saveAlbum(AlbumInfo albumInfo, StoredImage storedImage);
+
+  /**
+   * Saves many albums whose images are already in the image store. Albums are saved independently of each other: the
+   * images of the albums that cannot be saved are deleted again and the rest are still saved. This implementation
+   * saves the albums one at a time; stores that can write a batch in one round trip override it.
+   *
+   * @param albumInfos   The albums to be saved.
+   * @param storedImages The reference and size of every album's image, in the same order as the albums.
+   * @return The ImageMetaData of every album in the same order as the albums, with null for the albums that could
+   *     not be saved.
+   */
+  default List<ImageMetaData> saveAlbums(List<AlbumInfo> albumInfos, List<StoredImage> storedImages) {
+    List<ImageMetaData> saved = new ArrayList<>(albumInfos.size());
+    for (int i = 0; i < albumInfos.size(); i++) {
+      saved.add(saveAlbum(albumInfos.get(i), storedImages.get(i)));
+    }
+    return saved;
+  }
+
+  /**
+   * Deletes an image from the image store, logging instead of throwing on failure.
+   *
+   * @param imageId The reference of the image.
+   */
+  void deleteImageQuietly(String imageId);
+}
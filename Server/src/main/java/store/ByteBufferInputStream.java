@@ -0,0 +1,52 @@
+package store;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream over a byte buffer, typically a slice of a memory-mapped file, so stored images are read without
+ * copying them onto the heap first.
+ * @author ambikakabra
+ */
+final class ByteBufferInputStream extends InputStream {
+  private final ByteBuffer buffer;
+
+  /**
+   * Constructs a ByteBufferInputStream that reads the remaining bytes of a buffer.
+   *
+   * @param buffer The buffer, whose position is advanced as the stream is read.
+   */
+  ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    int n = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+}
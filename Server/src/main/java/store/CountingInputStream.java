@@ -0,0 +1,61 @@
+package store;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read through it.
+ * @author ambikakabra
+ */
+class CountingInputStream extends FilterInputStream {
+  private long count;
+
+  /**
+   * Constructs a CountingInputStream around the given stream.
+   *
+   * @param in The stream to read from.
+   */
+  CountingInputStream(InputStream in) {
+    super(in);
+  }
+
+  /**
+   * Gets the number of bytes read so far.
+   *
+   * @return The byte count.
+   */
+  long getCount() {
+    return count;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      count++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int n = super.read(buffer, offset, length);
+    if (n > 0) {
+      count += n;
+    }
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    count += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
@@ -0,0 +1,400 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import model.AlbumInfo;
+import model.ImageMetaData;
+import model.ReviewCounts;
+import model.StoredImage;
+import org.bson.types.ObjectId;
+
+/**
+ * A storage engine that keeps albums, images and review counts in the local process, without MongoDB. It is meant for
+ * benchmarks, tests and edge nodes, and as a baseline that shows the cost of the database round trips.
+ *
+ * <p>Albums and images are appended to a {@link MappedLog}, and images are written in chunks as they are read, so an
+ * upload never holds the log for longer than one chunk. Off-heap {@link OffHeapIndex} tables map album IDs to their
+ * records and image IDs to their last chunk, and hold the like and dislike counts of every reviewed album as
+ * primitive counters. Review deltas are appended to the log too, so the counts survive a restart: on open, the log is
+ * replayed to rebuild all tables.
+ *
+ * <p>Only one store may have the directory open at a time; the log locks it.
+ *
+ * @author ambikakabra
+ */
+public class EmbeddedStore implements AlbumStore, ReviewStore, ImageStore, AutoCloseable {
+  private static final byte ALBUM = 1;
+  private static final byte IMAGE_CHUNK = 2;
+  private static final byte IMAGE = 3;
+  private static final byte IMAGE_DELETED = 4;
+  private static final byte REVIEWS = 5;
+  private static final byte REVIEWS_APPLIED = 6;
+
+  /** The largest number of image bytes in one log record. */
+  private static final int CHUNK_SIZE_BYTES = 255 * 1024;
+
+  /** The length of the fields in front of the bytes of an image chunk: the image ID and the previous chunk. */
+  private static final int CHUNK_HEADER_LENGTH = 12 + 8;
+
+  /** The length of one album's delta in a reviews record: the album ID and two counts. */
+  private static final int REVIEW_DELTA_LENGTH = 12 + 8 + 8;
+
+  private final MappedLog log;
+  private final int maxDeltasPerRecord;
+  private final OffHeapIndex albums;
+  private final OffHeapIndex images;
+  private final OffHeapIndex reviews;
+  /** The cumulative counts applied per writer and album. Every writer's map is only written by that writer. */
+  private final Map<String, Map<ObjectId, long[]>> appliedCounts = new ConcurrentHashMap<>();
+
+  /**
+   * Opens the store in a directory and rebuilds its tables from the log.
+   *
+   * @param directory     The directory of the log.
+   * @param segmentSize   The size of every log segment file in bytes.
+   * @param syncWrites    Whether every write is forced to the storage device before it is acknowledged.
+   * @param indexCapacity The initial number of slots of every table.
+   * @throws IOException If the log cannot be opened.
+   */
+  public EmbeddedStore(Path directory, int segmentSize, boolean syncWrites, int indexCapacity) throws IOException {
+    this.log = new MappedLog(directory, segmentSize, syncWrites);
+    this.maxDeltasPerRecord = (segmentSize - MappedLog.HEADER_LENGTH - 4) / REVIEW_DELTA_LENGTH;
+    this.albums = new OffHeapIndex(indexCapacity);
+    this.images = new OffHeapIndex(indexCapacity);
+    this.reviews = new OffHeapIndex(indexCapacity);
+    log.replay(this::apply);
+  }
+
+  @Override
+  public AlbumInfo getAlbumById(String albumId) {
+    long[] entry = new long[2];
+    if (!ObjectId.isValid(albumId) || !albums.get(new ObjectId(albumId), entry)) {
+      return null;
+    }
+    ByteBuffer payload = log.payloadAt(entry[0]);
+    payload.position(12);
+    readString(payload);
+    payload.getLong();
+    return new AlbumInfo(albumId, readString(payload), readString(payload), readString(payload));
+  }
+
+  @Override
+  public boolean albumExists(String albumId) {
+    return ObjectId.isValid(albumId) && albums.contains(new ObjectId(albumId));
+  }
+
+  @Override
+  public ImageMetaData saveAlbum(AlbumInfo albumInfo, InputStream image) {
+    StoredImage storedImage;
+    try {
+      storedImage = save(image);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      return null;
+    }
+    return saveAlbum(albumInfo, storedImage);
+  }
+
+  @Override
+  public ImageMetaData saveAlbum(AlbumInfo albumInfo, StoredImage storedImage) {
+    ObjectId id = new ObjectId();
+    byte[] imageId = storedImage.getImageId().getBytes(StandardCharsets.UTF_8);
+    byte[] artist = albumInfo.getArtist().getBytes(StandardCharsets.UTF_8);
+    byte[] title = albumInfo.getTitle().getBytes(StandardCharsets.UTF_8);
+    byte[] year = albumInfo.getYear().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer payload = ByteBuffer.allocate(12 + 8 + 4 * 4 + imageId.length + artist.length + title.length
+        + year.length);
+    id.putToByteBuffer(payload);
+    writeString(payload, imageId);
+    payload.putLong(storedImage.getSize());
+    writeString(payload, artist);
+    writeString(payload, title);
+    writeString(payload, year);
+    try {
+      albums.put(id, log.append(ALBUM, payload.flip()), 0);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+      deleteImageQuietly(storedImage.getImageId());
+      return null;
+    }
+    return new ImageMetaData(id.toString(), storedImage.getSize());
+  }
+
+  @Override
+  public void deleteImageQuietly(String imageId) {
+    try {
+      delete(imageId);
+    } catch (IOException | RuntimeException e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Override
+  public StoredImage save(InputStream image) throws IOException {
+    ObjectId id = new ObjectId();
+    ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER_LENGTH + CHUNK_SIZE_BYTES);
+    long previous = -1;
+    long size = 0;
+    int read;
+    while ((read = image.readNBytes(chunk.array(), CHUNK_HEADER_LENGTH, CHUNK_SIZE_BYTES)) > 0) {
+      chunk.clear();
+      id.putToByteBuffer(chunk);
+      chunk.putLong(previous).position(0).limit(CHUNK_HEADER_LENGTH + read);
+      previous = log.append(IMAGE_CHUNK, chunk);
+      size += read;
+    }
+    ByteBuffer payload = ByteBuffer.allocate(12 + 8 + 8);
+    id.putToByteBuffer(payload);
+    payload.putLong(previous).putLong(size);
+    log.append(IMAGE, payload.flip());
+    images.put(id, previous, size);
+    return new StoredImage(id.toHexString(), size);
+  }
+
+  @Override
+  public InputStream open(String imageId) throws IOException {
+    long[] entry = new long[2];
+    if (!ObjectId.isValid(imageId) || !images.get(new ObjectId(imageId), entry)) {
+      throw new IOException("Image " + imageId + " does not exist");
+    }
+    Deque<InputStream> chunks = new ArrayDeque<>();
+    for (long offset = entry[0]; offset >= 0; ) {
+      ByteBuffer payload = log.payloadAt(offset);
+      offset = payload.getLong(12);
+      chunks.addFirst(new ByteBufferInputStream(payload.position(CHUNK_HEADER_LENGTH)));
+    }
+    return new SequenceInputStream(Collections.enumeration(chunks));
+  }
+
+  @Override
+  public void delete(String imageId) throws IOException {
+    if (!ObjectId.isValid(imageId)) {
+      return;
+    }
+    ObjectId id = new ObjectId(imageId);
+    if (images.contains(id)) {
+      ByteBuffer payload = ByteBuffer.allocate(12);
+      id.putToByteBuffer(payload);
+      log.append(IMAGE_DELETED, payload.flip());
+      images.remove(id);
+    }
+  }
+
+  @Override
+  public ReviewCounts getReviewCounts(String albumId) {
+    long[] counts = new long[2];
+    if (!ObjectId.isValid(albumId) || !reviews.get(new ObjectId(albumId), counts)) {
+      return new ReviewCounts(0, 0);
+    }
+    return new ReviewCounts(counts[0], counts[1]);
+  }
+
+  /**
+   * Appends the deltas to the log and then adds them to the counters. Album IDs that are not valid ObjectIds cannot
+   * belong to an album and are skipped.
+   */
+  @Override
+  public int bulkUpdateReviews(Map<String, ReviewCounts> deltas) {
+    return writeReviews(REVIEWS, null, deltas);
+  }
+
+  /**
+   * Appends the cumulative counts to the log and then adds their unapplied parts to the counters. The counts applied
+   * per writer are kept in memory and rebuilt from the log on open. Album IDs that are not valid ObjectIds cannot
+   * belong to an album and are skipped.
+   */
+  @Override
+  public int bulkApplyReviews(String writerId, Map<String, ReviewCounts> counts) {
+    return writeReviews(REVIEWS_APPLIED, writerId, counts);
+  }
+
+  /**
+   * Gets the number of albums in the store.
+   *
+   * @return The album count.
+   */
+  public int getAlbumCount() {
+    return albums.size();
+  }
+
+  /**
+   * Gets the number of albums that have been reviewed.
+   *
+   * @return The reviewed album count.
+   */
+  public int getReviewedAlbumCount() {
+    return reviews.size();
+  }
+
+  /**
+   * Gets the size of the log.
+   *
+   * @return The log size in bytes.
+   */
+  public long getLogSize() {
+    return log.size();
+  }
+
+  /**
+   * Gets the direct memory held by the tables.
+   *
+   * @return The table size in bytes.
+   */
+  public long getIndexMemoryBytes() {
+    return albums.memoryBytes() + images.memoryBytes() + reviews.memoryBytes();
+  }
+
+  /**
+   * Forces the log to the storage device.
+   */
+  @Override
+  public void close() {
+    log.close();
+  }
+
+  /**
+   * Appends review counts to the log, in as many records as needed, and applies every record to the counters once it
+   * has been appended.
+   *
+   * @param type     The record type, {@link #REVIEWS} to add deltas or {@link #REVIEWS_APPLIED} to apply a writer's
+   *                 cumulative counts.
+   * @param writerId The writer of cumulative counts, or null for deltas.
+   * @param counts   The counts keyed by album ID.
+   * @return The number of albums written.
+   * @throws PartialWriteException If a record after the first cannot be appended; the earlier records are applied.
+   * @throws IllegalStateException If the counts cannot be appended to the log.
+   */
+  private int writeReviews(byte type, String writerId, Map<String, ReviewCounts> counts) {
+    List<ObjectId> ids = new ArrayList<>(counts.size());
+    List<ReviewCounts> values = new ArrayList<>(counts.size());
+    for (Map.Entry<String, ReviewCounts> entry : counts.entrySet()) {
+      ReviewCounts value = entry.getValue();
+      if (ObjectId.isValid(entry.getKey())
+          && (writerId != null || value.getLikes() != 0 || value.getDislikes() != 0)) {
+        ids.add(new ObjectId(entry.getKey()));
+        values.add(value);
+      }
+    }
+    byte[] writer = writerId == null ? new byte[0] : writerId.getBytes(StandardCharsets.UTF_8);
+    int prefixLength = writerId == null ? 4 : 4 + 4 + writer.length;
+    // The writer ID takes the place of as many deltas as it needs.
+    int perRecord = maxDeltasPerRecord - (prefixLength - 4 + REVIEW_DELTA_LENGTH - 1) / REVIEW_DELTA_LENGTH;
+
+    for (int start = 0; start < ids.size(); start += perRecord) {
+      int end = Math.min(ids.size(), start + perRecord);
+      ByteBuffer payload = ByteBuffer.allocate(prefixLength + (end - start) * REVIEW_DELTA_LENGTH);
+      if (writerId != null) {
+        writeString(payload, writer);
+      }
+      payload.putInt(end - start);
+      for (int i = start; i < end; i++) {
+        ids.get(i).putToByteBuffer(payload);
+        payload.putLong(values.get(i).getLikes()).putLong(values.get(i).getDislikes());
+      }
+      try {
+        log.append(type, payload.flip());
+      } catch (IOException | RuntimeException e) {
+        if (start == 0) {
+          throw new IllegalStateException("Error appending review counts", e);
+        }
+        Set<String> failed = new HashSet<>();
+        for (int i = start; i < ids.size(); i++) {
+          failed.add(ids.get(i).toHexString());
+        }
+        throw new PartialWriteException(failed, e);
+      }
+      for (int i = start; i < end; i++) {
+        if (writerId == null) {
+          reviews.add(ids.get(i), values.get(i).getLikes(), values.get(i).getDislikes());
+        } else {
+          applyCumulative(writerId, ids.get(i), values.get(i).getLikes(), values.get(i).getDislikes());
+        }
+      }
+    }
+    return ids.size();
+  }
+
+  /**
+   * Adds the part of a writer's cumulative counts of an album that has not been applied yet to the counters.
+   *
+   * @param writerId The writer of the counts.
+   * @param albumId  The album.
+   * @param likes    The cumulative likes of the writer.
+   * @param dislikes The cumulative dislikes of the writer.
+   */
+  private void applyCumulative(String writerId, ObjectId albumId, long likes, long dislikes) {
+    long[] applied = appliedCounts.computeIfAbsent(writerId, id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(albumId, id -> new long[2]);
+    long addedLikes = Math.max(0, likes - applied[0]);
+    long addedDislikes = Math.max(0, dislikes - applied[1]);
+    applied[0] += addedLikes;
+    applied[1] += addedDislikes;
+    if (addedLikes != 0 || addedDislikes != 0) {
+      reviews.add(albumId, addedLikes, addedDislikes);
+    }
+  }
+
+  /**
+   * Applies a record of the log to the tables while the store is opened.
+   *
+   * @param offset  The offset of the record.
+   * @param type    The type of the record.
+   * @param payload The payload of the record.
+   */
+  private void apply(long offset, byte type, ByteBuffer payload) {
+    switch (type) {
+      case ALBUM:
+        albums.put(readId(payload), offset, 0);
+        break;
+      case IMAGE:
+        images.put(readId(payload), payload.getLong(), payload.getLong());
+        break;
+      case IMAGE_DELETED:
+        images.remove(readId(payload));
+        break;
+      case REVIEWS:
+        for (int count = payload.getInt(); count > 0; count--) {
+          reviews.add(readId(payload), payload.getLong(), payload.getLong());
+        }
+        break;
+      case REVIEWS_APPLIED:
+        String writerId = readString(payload);
+        for (int count = payload.getInt(); count > 0; count--) {
+          applyCumulative(writerId, readId(payload), payload.getLong(), payload.getLong());
+        }
+        break;
+      default:
+        // Image chunks are only read through their image.
+        break;
+    }
+  }
+
+  private static ObjectId readId(ByteBuffer payload) {
+    byte[] bytes = new byte[12];
+    payload.get(bytes);
+    return new ObjectId(bytes);
+  }
+
+  private static void writeString(ByteBuffer payload, byte[] bytes) {
+    payload.putInt(bytes.length).put(bytes);
+  }
+
+  private static String readString(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.getInt()];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,75 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import model.StoredImage;
+import org.bson.types.ObjectId;
+
+/**
+ * An image store backed by a local directory. Uploads are streamed into a temporary file and moved into place once
+ * complete, and reads are served from a read-only memory mapping of the file, so images never pass through the heap
+ * as a whole.
+ * @author ambikakabra
+ */
+public class FileSystemImageStore implements ImageStore {
+  private final Path directory;
+
+  /**
+   * Constructs a FileSystemImageStore, creating the directory if necessary.
+   *
+   * @param directory The directory that holds the images.
+   * @throws IOException If the directory cannot be created.
+   */
+  public FileSystemImageStore(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  @Override
+  public StoredImage save(InputStream image) throws IOException {
+    String imageId = new ObjectId().toHexString();
+    Path target = pathOf(imageId);
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), imageId, ".part");
+    try {
+      long size = Files.copy(image, temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+      return new StoredImage(imageId, size);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  @Override
+  public InputStream open(String imageId) throws IOException {
+    try (FileChannel channel = FileChannel.open(pathOf(imageId), StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new ByteBufferInputStream(mapped);
+    }
+  }
+
+  @Override
+  public void delete(String imageId) throws IOException {
+    Files.deleteIfExists(pathOf(imageId));
+  }
+
+  /**
+   * Resolves the file of an image. Images are spread over subdirectories named after the last two characters of the
+   * reference, which vary fastest between consecutive ObjectIds.
+   *
+   * @param imageId The image reference.
+   * @return The path of the image file.
+   * @throws IOException If the reference is not a valid image reference.
+   */
+  private Path pathOf(String imageId) throws IOException {
+    if (!ObjectId.isValid(imageId)) {
+      throw new IOException("Invalid image reference " + imageId);
+    }
+    return directory.resolve(imageId.substring(imageId.length() - 2)).resolve(imageId);
+  }
+}
@@ -0,0 +1,65 @@
+package store;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import java.io.IOException;
+import java.io.InputStream;
+import model.StoredImage;
+import org.bson.types.ObjectId;
+
+/**
+ * An image store backed by a MongoDB GridFS bucket. Images are uploaded chunk by chunk as they are read from the
+ * input stream.
+ * @author ambikakabra
+ */
+public class GridFsImageStore implements ImageStore {
+  private static final int CHUNK_SIZE_BYTES = 255 * 1024;
+
+  private final GridFSBucket bucket;
+
+  /**
+   * Constructs a GridFsImageStore.
+   *
+   * @param database   The database that holds the bucket.
+   * @param bucketName The name of the GridFS bucket.
+   */
+  public GridFsImageStore(MongoDatabase database, String bucketName) {
+    this.bucket = GridFSBuckets.create(database, bucketName);
+  }
+
+  @Override
+  public StoredImage save(InputStream image) throws IOException {
+    CountingInputStream counting = new CountingInputStream(image);
+    try {
+      ObjectId id = bucket.uploadFromStream("image", counting,
+          new GridFSUploadOptions().chunkSizeBytes(CHUNK_SIZE_BYTES));
+      return new StoredImage(id.toHexString(), counting.getCount());
+    } catch (MongoException e) {
+      throw new IOException("Error while uploading image to GridFS", e);
+    }
+  }
+
+  @Override
+  public InputStream open(String imageId) throws IOException {
+    try {
+      return bucket.openDownloadStream(new ObjectId(imageId));
+    } catch (MongoException | IllegalArgumentException e) {
+      throw new IOException("Error while opening image " + imageId, e);
+    }
+  }
+
+  @Override
+  public void delete(String imageId) throws IOException {
+    try {
+      bucket.delete(new ObjectId(imageId));
+    } catch (MongoGridFSException e) {
+      // The image does not exist.
+    } catch (MongoException e) {
+      throw new IOException("Error while deleting image " + imageId, e);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import model.StoredImage;
+
+/**
+ * Stores album images outside the album documents, so album metadata stays small and images are streamed instead of
+ * being held in memory as a whole.
+ * @author ambikakabra
+ */
+public interface ImageStore {
+
+  /**
+   * Saves an image by streaming it from the given input stream. The stream is read to its end but not closed.
+   *
+   * @param image The image content.
+   * @return The reference and size of the saved image.
+   * @throws IOException If the image cannot be read or stored.
+   */
+  StoredImage save(InputStream image) throws IOException;
+
+  /**
+   * Opens a saved image for reading.
+   *
+   * @param imageId The reference returned by {@link #save(InputStream)}.
+   * @return A stream of the image content, which the caller must close.
+   * @throws IOException If the image does not exist or cannot be read.
+   */
+  InputStream open(String imageId) throws IOException;
+
+  /**
+   * Deletes a saved image. Deleting an image that does not exist is not an error.
+   *
+   * @param imageId The reference returned by {@link #save(InputStream)}.
+   * @throws IOException If the image cannot be deleted.
+   */
+  void delete(String imageId) throws IOException;
+}
@@ -0,0 +1,308 @@
+package store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of typed records in a directory of memory-mapped segment files. Appends copy the record into the
+ * mapping of the active segment, and reads are absolute gets on the mappings, so neither goes through a system call.
+ * A record is addressed by its offset, which never changes once it has been written.
+ *
+ * <p>Every record starts with a 9-byte header: the payload length (4 bytes), a CRC32C of the type and payload
+ * (4 bytes) and the type (1 byte). A record never spans two segments; when it does not fit, the rest of the active
+ * segment is left zeroed, which marks its end, and the record starts the next segment. On open, the segments are
+ * scanned to find the end of the log, and a torn record at the tail, left by a crash, is discarded.
+ *
+ * <p>The log holds an exclusive lock on a lock file in its directory until it is closed, so a second writer, in this
+ * process or another, fails to open it instead of corrupting the segments.
+ *
+ * @author ambikakabra
+ */
+final class MappedLog implements AutoCloseable {
+  /** The length of a record header. */
+  static final int HEADER_LENGTH = 9;
+
+  /** Receives the records of the log in order. */
+  interface RecordVisitor {
+
+    /**
+     * Handles one record.
+     *
+     * @param offset  The offset of the record.
+     * @param type    The type of the record.
+     * @param payload The payload of the record, positioned at its start.
+     */
+    void visit(long offset, byte type, ByteBuffer payload);
+  }
+
+  private final Path directory;
+  private final int segmentSize;
+  private final boolean syncWrites;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+  private volatile MappedByteBuffer[] segments;
+  private int activeSegment;
+  private int position;
+
+  /**
+   * Opens the log in a directory, creating the directory and the first segment if necessary.
+   *
+   * @param directory   The directory of the segment files.
+   * @param segmentSize The size of every segment file in bytes.
+   * @param syncWrites  Whether every append is forced to the storage device before it returns.
+   * @throws IOException If the directory is locked by another log, or a segment cannot be created or mapped.
+   */
+  MappedLog(Path directory, int segmentSize, boolean syncWrites) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.segmentSize = segmentSize;
+    this.syncWrites = syncWrites;
+    this.lockChannel = FileChannel.open(directory.resolve("store.lock"), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    try {
+      this.lock = lockChannel.tryLock();
+    } catch (IOException | OverlappingFileLockException e) {
+      lockChannel.close();
+      throw new IOException("Cannot lock the log in " + directory, e);
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException("The log in " + directory + " is already open in another process");
+    }
+    try {
+      this.segments = openSegments();
+    } catch (IOException | RuntimeException e) {
+      lockChannel.close();
+      throw e;
+    }
+    this.activeSegment = segments.length - 1;
+    this.position = recoverEnd(segments[activeSegment]);
+  }
+
+  /**
+   * Maps the existing segment files in order, creating the first segment of a new log.
+   *
+   * @return The mapped segments.
+   * @throws IOException If a segment is missing or cannot be created or mapped.
+   */
+  private MappedByteBuffer[] openSegments() throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+    }
+    List<MappedByteBuffer> mapped = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      if (!files.get(i).equals(segmentPath(i))) {
+        throw new IOException("Missing log segment " + segmentPath(i));
+      }
+      mapped.add(map(files.get(i)));
+    }
+    if (mapped.isEmpty()) {
+      mapped.add(map(segmentPath(0)));
+    }
+    return mapped.toArray(new MappedByteBuffer[0]);
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @param type    The type of the record.
+   * @param payload The payload, from its position to its limit. The position is not changed.
+   * @return The offset of the record.
+   * @throws IOException              If a new segment cannot be created.
+   * @throws IllegalArgumentException If the record does not fit in a segment.
+   */
+  synchronized long append(byte type, ByteBuffer payload) throws IOException {
+    int length = payload.remaining();
+    if (HEADER_LENGTH + length > segmentSize) {
+      throw new IllegalArgumentException("Record of " + length + " bytes does not fit in a log segment");
+    }
+    if (position + HEADER_LENGTH + length > segmentSize) {
+      roll();
+    }
+    MappedByteBuffer segment = segments[activeSegment];
+    CRC32C crc = new CRC32C();
+    crc.update(type);
+    crc.update(payload.duplicate());
+    segment.put(position + HEADER_LENGTH - 1, type);
+    segment.put(position + HEADER_LENGTH, payload, payload.position(), length);
+    segment.putInt(position + 4, (int) crc.getValue());
+    // The length is written last: a reader never sees a non-zero length before the rest of the record.
+    segment.putInt(position, length);
+    long offset = (long) activeSegment * segmentSize + position;
+    position += HEADER_LENGTH + length;
+    if (syncWrites) {
+      segment.force();
+    }
+    return offset;
+  }
+
+  /**
+   * Reads the type of a record.
+   *
+   * @param offset The offset of the record.
+   * @return The type.
+   */
+  byte typeAt(long offset) {
+    return segmentOf(offset).get(positionOf(offset) + HEADER_LENGTH - 1);
+  }
+
+  /**
+   * Reads the payload of a record without copying it.
+   *
+   * @param offset The offset of the record.
+   * @return A read-only buffer over the payload.
+   */
+  ByteBuffer payloadAt(long offset) {
+    MappedByteBuffer segment = segmentOf(offset);
+    int start = positionOf(offset);
+    int length = segment.getInt(start);
+    return segment.slice(start + HEADER_LENGTH, length).asReadOnlyBuffer();
+  }
+
+  /**
+   * Visits every record of the log in order. Must not run concurrently with appends.
+   *
+   * @param visitor The visitor of the records.
+   */
+  void replay(RecordVisitor visitor) {
+    MappedByteBuffer[] current = segments;
+    for (int i = 0; i < current.length; i++) {
+      MappedByteBuffer segment = current[i];
+      int start = 0;
+      int length;
+      while ((length = validLength(segment, start)) >= 0) {
+        long offset = (long) i * segmentSize + start;
+        ByteBuffer payload = segment.slice(start + HEADER_LENGTH, length).asReadOnlyBuffer();
+        visitor.visit(offset, segment.get(start + HEADER_LENGTH - 1), payload);
+        start += HEADER_LENGTH + length;
+      }
+    }
+  }
+
+  /**
+   * Forces every write of the active segment to the storage device.
+   */
+  synchronized void force() {
+    segments[activeSegment].force();
+  }
+
+  /**
+   * Gets the number of bytes used by the log, including the unused ends of full segments.
+   *
+   * @return The log size in bytes.
+   */
+  synchronized long size() {
+    return (long) activeSegment * segmentSize + position;
+  }
+
+  /**
+   * Forces the log to the storage device and releases the directory. The mappings are released by the garbage
+   * collector.
+   */
+  @Override
+  public void close() {
+    force();
+    try {
+      lockChannel.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Forces the active segment and starts the next one.
+   *
+   * @throws IOException If the segment cannot be created or mapped.
+   */
+  private void roll() throws IOException {
+    segments[activeSegment].force();
+    MappedByteBuffer next = map(segmentPath(activeSegment + 1));
+    MappedByteBuffer[] rolled = Arrays.copyOf(segments, segments.length + 1);
+    rolled[rolled.length - 1] = next;
+    segments = rolled;
+    activeSegment++;
+    position = 0;
+  }
+
+  /**
+   * Finds the end of the last segment. Everything from the first record that is incomplete or fails its checksum is
+   * zeroed, so a torn write can never be mistaken for a record later.
+   *
+   * @param segment The last segment.
+   * @return The position after the last valid record.
+   */
+  private int recoverEnd(MappedByteBuffer segment) {
+    int end = 0;
+    int length;
+    while ((length = validLength(segment, end)) >= 0) {
+      end += HEADER_LENGTH + length;
+    }
+    boolean torn = false;
+    for (int i = end; i < segmentSize; i++) {
+      if (segment.get(i) != 0) {
+        segment.put(i, (byte) 0);
+        torn = true;
+      }
+    }
+    if (torn) {
+      System.err.println("Discarded a torn record at the end of " + segmentPath(activeSegment));
+      segment.force();
+    }
+    return end;
+  }
+
+  /**
+   * Checks the record at a position of a segment.
+   *
+   * @param segment  The segment.
+   * @param position The position of the record.
+   * @return The payload length of the record, or -1 if there is no valid record at the position.
+   */
+  private int validLength(MappedByteBuffer segment, int position) {
+    if (position + HEADER_LENGTH > segmentSize) {
+      return -1;
+    }
+    int length = segment.getInt(position);
+    if (length <= 0 || length > segmentSize - position - HEADER_LENGTH) {
+      return -1;
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(segment.get(position + HEADER_LENGTH - 1));
+    crc.update(segment.slice(position + HEADER_LENGTH, length));
+    return (int) crc.getValue() == segment.getInt(position + 4) ? length : -1;
+  }
+
+  private MappedByteBuffer segmentOf(long offset) {
+    return segments[(int) (offset / segmentSize)];
+  }
+
+  private int positionOf(long offset) {
+    return (int) (offset % segmentSize);
+  }
+
+  private Path segmentPath(int index) {
+    return directory.resolve(String.format("%08d.log", index));
+  }
+
+  private MappedByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      if (channel.size() != 0 && channel.size() != segmentSize) {
+        throw new IOException("Log segment " + path + " was not created with a segment size of " + segmentSize);
+      }
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+  }
+}
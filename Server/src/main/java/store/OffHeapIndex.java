@@ -0,0 +1,310 @@
+package store;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+import org.bson.types.ObjectId;
+
+/**
+ * An open-addressing hash table keyed by 12-byte ObjectIds that keeps its entries in direct memory, outside the Java
+ * heap. Every entry holds two primitive values, such as a log offset and a size or a like and a dislike count, so
+ * millions of entries cost neither objects nor garbage collection work.
+ *
+ * <p>An entry is 32 bytes: the id as a long and an int, a state int, and two long values. Collisions are resolved by
+ * linear probing, and the table doubles when it is 70% used. Writers take an exclusive lock; readers use optimistic
+ * reads and only fall back to a read lock when a write overlapped.
+ *
+ * @author ambikakabra
+ */
+final class OffHeapIndex {
+  private static final int ENTRY_LENGTH = 32;
+  private static final int LOW_OFFSET = 8;
+  private static final int STATE_OFFSET = 12;
+  private static final int FIRST_OFFSET = 16;
+  private static final int SECOND_OFFSET = 24;
+  private static final int EMPTY = 0;
+  private static final int FULL = 1;
+  private static final int DELETED = 2;
+  private static final int MAX_CAPACITY = 1 << 25;
+
+  /** The entries and the mask of their capacity, replaced together on resize. */
+  private static final class Table {
+    private final ByteBuffer entries;
+    private final int mask;
+
+    private Table(int capacity) {
+      this.entries = ByteBuffer.allocateDirect(capacity * ENTRY_LENGTH);
+      this.mask = capacity - 1;
+    }
+  }
+
+  private final StampedLock lock = new StampedLock();
+  private volatile Table table;
+  private int size;
+  private int used;
+
+  /**
+   * Constructs an OffHeapIndex.
+   *
+   * @param initialCapacity The initial number of slots, rounded up to a power of two.
+   */
+  OffHeapIndex(int initialCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(16, Math.min(initialCapacity, MAX_CAPACITY) - 1)) << 1;
+    this.table = new Table(capacity);
+  }
+
+  /**
+   * Reads both values of an entry.
+   *
+   * @param id     The key.
+   * @param values An array of at least two elements that receives the values.
+   * @return True if the key is present, false otherwise, in which case the array is not changed.
+   */
+  boolean get(ObjectId id, long[] values) {
+    byte[] bytes = id.toByteArray();
+    long high = high(bytes);
+    int low = low(bytes);
+
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      Table current = table;
+      int slot = find(current, high, low);
+      long first = slot < 0 ? 0 : current.entries.getLong(slot + FIRST_OFFSET);
+      long second = slot < 0 ? 0 : current.entries.getLong(slot + SECOND_OFFSET);
+      if (lock.validate(stamp)) {
+        if (slot < 0) {
+          return false;
+        }
+        values[0] = first;
+        values[1] = second;
+        return true;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      Table current = table;
+      int slot = find(current, high, low);
+      if (slot < 0) {
+        return false;
+      }
+      values[0] = current.entries.getLong(slot + FIRST_OFFSET);
+      values[1] = current.entries.getLong(slot + SECOND_OFFSET);
+      return true;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Checks whether a key is present.
+   *
+   * @param id The key.
+   * @return True if the key is present.
+   */
+  boolean contains(ObjectId id) {
+    return get(id, new long[2]);
+  }
+
+  /**
+   * Sets both values of an entry, adding it if necessary.
+   *
+   * @param id     The key.
+   * @param first  The first value.
+   * @param second The second value.
+   */
+  void put(ObjectId id, long first, long second) {
+    byte[] bytes = id.toByteArray();
+    long stamp = lock.writeLock();
+    try {
+      int slot = findOrInsert(high(bytes), low(bytes));
+      table.entries.putLong(slot + FIRST_OFFSET, first).putLong(slot + SECOND_OFFSET, second);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Adds to both values of an entry, adding it with zero values first if necessary.
+   *
+   * @param id          The key.
+   * @param firstDelta  The amount added to the first value.
+   * @param secondDelta The amount added to the second value.
+   */
+  void add(ObjectId id, long firstDelta, long secondDelta) {
+    byte[] bytes = id.toByteArray();
+    long stamp = lock.writeLock();
+    try {
+      int slot = findOrInsert(high(bytes), low(bytes));
+      ByteBuffer entries = table.entries;
+      entries.putLong(slot + FIRST_OFFSET, entries.getLong(slot + FIRST_OFFSET) + firstDelta);
+      entries.putLong(slot + SECOND_OFFSET, entries.getLong(slot + SECOND_OFFSET) + secondDelta);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes an entry.
+   *
+   * @param id The key.
+   * @return True if the key was present.
+   */
+  boolean remove(ObjectId id) {
+    byte[] bytes = id.toByteArray();
+    long stamp = lock.writeLock();
+    try {
+      int slot = find(table, high(bytes), low(bytes));
+      if (slot < 0) {
+        return false;
+      }
+      table.entries.putInt(slot + STATE_OFFSET, DELETED);
+      size--;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return The entry count.
+   */
+  int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Gets the direct memory held by the table.
+   *
+   * @return The table size in bytes.
+   */
+  long memoryBytes() {
+    return table.entries.capacity();
+  }
+
+  /**
+   * Finds the slot of a key. Safe to call without a lock: a torn read only produces a wrong answer, which the caller
+   * discards after failing to validate its stamp.
+   *
+   * @param current The table to search.
+   * @param high    The first 8 bytes of the key.
+   * @param low     The last 4 bytes of the key.
+   * @return The byte offset of the key's entry, or -1 if it is not present.
+   */
+  private static int find(Table current, long high, int low) {
+    ByteBuffer entries = current.entries;
+    int index = hash(high, low) & current.mask;
+    for (int probes = 0; probes <= current.mask; probes++) {
+      int slot = index * ENTRY_LENGTH;
+      int state = entries.getInt(slot + STATE_OFFSET);
+      if (state == EMPTY) {
+        return -1;
+      }
+      if (state == FULL && entries.getLong(slot) == high && entries.getInt(slot + LOW_OFFSET) == low) {
+        return slot;
+      }
+      index = (index + 1) & current.mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the slot of a key, inserting it with zero values if it is not present. Must hold the write lock.
+   *
+   * @param high The first 8 bytes of the key.
+   * @param low  The last 4 bytes of the key.
+   * @return The byte offset of the key's entry.
+   */
+  private int findOrInsert(long high, int low) {
+    int slot = find(table, high, low);
+    if (slot >= 0) {
+      return slot;
+    }
+    if ((used + 1) * 10L > (table.mask + 1) * 7L) {
+      resize();
+    }
+    ByteBuffer entries = table.entries;
+    int index = hash(high, low) & table.mask;
+    while (true) {
+      slot = index * ENTRY_LENGTH;
+      int state = entries.getInt(slot + STATE_OFFSET);
+      if (state != FULL) {
+        if (state == EMPTY) {
+          used++;
+        }
+        entries.putLong(slot, high)
+            .putInt(slot + LOW_OFFSET, low)
+            .putLong(slot + FIRST_OFFSET, 0)
+            .putLong(slot + SECOND_OFFSET, 0)
+            .putInt(slot + STATE_OFFSET, FULL);
+        size++;
+        return slot;
+      }
+      index = (index + 1) & table.mask;
+    }
+  }
+
+  /**
+   * Rehashes all entries into a new table, doubling it unless most used slots were deleted entries. Must hold the
+   * write lock.
+   *
+   * @throws IllegalStateException If the table cannot grow any further.
+   */
+  private void resize() {
+    Table old = table;
+    int capacity = old.mask + 1;
+    if (size * 2 >= capacity * 7L / 10) {
+      if (capacity >= MAX_CAPACITY) {
+        throw new IllegalStateException("Off-heap index is full");
+      }
+      capacity <<= 1;
+    }
+    Table resized = new Table(capacity);
+    for (int slot = 0; slot < old.entries.capacity(); slot += ENTRY_LENGTH) {
+      if (old.entries.getInt(slot + STATE_OFFSET) != FULL) {
+        continue;
+      }
+      long high = old.entries.getLong(slot);
+      int low = old.entries.getInt(slot + LOW_OFFSET);
+      int index = hash(high, low) & resized.mask;
+      while (resized.entries.getInt(index * ENTRY_LENGTH + STATE_OFFSET) != EMPTY) {
+        index = (index + 1) & resized.mask;
+      }
+      int target = index * ENTRY_LENGTH;
+      resized.entries.putLong(target, high)
+          .putInt(target + LOW_OFFSET, low)
+          .putLong(target + FIRST_OFFSET, old.entries.getLong(slot + FIRST_OFFSET))
+          .putLong(target + SECOND_OFFSET, old.entries.getLong(slot + SECOND_OFFSET))
+          .putInt(target + STATE_OFFSET, FULL);
+    }
+    table = resized;
+    used = size;
+  }
+
+  private static int hash(long high, int low) {
+    long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static long high(byte[] bytes) {
+    long h = 0;
+    for (int i = 0; i < 8; i++) {
+      h = (h << 8) | (bytes[i] & 0xFF);
+    }
+    return h;
+  }
+
+  private static int low(byte[] bytes) {
+    int l = 0;
+    for (int i = 8; i < 12; i++) {
+      l = (l << 8) | (bytes[i] & 0xFF);
+    }
+    return l;
+  }
+}
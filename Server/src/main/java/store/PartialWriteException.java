@@ -0,0 +1,34 @@
+package store;
+
+import java.util.Set;
+
+/**
+ * Thrown by a bulk write of review counts that was applied to some albums but not to others. The writes of the albums
+ * that are not listed have been applied and must not be sent again.
+ * @author ambikakabra
+ */
+public class PartialWriteException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final Set<String> failedAlbumIds;
+
+  /**
+   * Constructs a PartialWriteException.
+   *
+   * @param failedAlbumIds The IDs of the albums whose writes were not applied.
+   * @param cause          The error reported by the store.
+   */
+  public PartialWriteException(Set<String> failedAlbumIds, Throwable cause) {
+    super(failedAlbumIds.size() + " review writes failed", cause);
+    this.failedAlbumIds = Set.copyOf(failedAlbumIds);
+  }
+
+  /**
+   * Gets the IDs of the albums whose writes were not applied.
+   *
+   * @return The failed album IDs.
+   */
+  public Set<String> getFailedAlbumIds() {
+    return failedAlbumIds;
+  }
+}
@@ -0,0 +1,43 @@
+package store;
+
+import java.util.Map;
+import model.ReviewCounts;
+
+/**
+ * Stores the like and dislike counts of albums.
+ * @author ambikakabra
+ */
+public interface ReviewStore {
+
+  /**
+   * Reads the stored like and dislike counts of an album.
+   *
+   * @param albumId The unique identifier of the album.
+   * @return The counts, zero if the album has no reviews, or null if they cannot be read.
+   */
+  ReviewCounts getReviewCounts(String albumId);
+
+  /**
+   * Applies coalesced like and dislike deltas for many albums in one write.
+   *
+   * @param deltas The likes and dislikes to add, keyed by album ID.
+   * @return The number of write operations issued.
+   * @throws PartialWriteException If the deltas of some albums were written and the others were not.
+   * @throws RuntimeException      If the deltas cannot be written.
+   */
+  int bulkUpdateReviews(Map<String, ReviewCounts> deltas);
+
+  /**
+   * Applies the cumulative like and dislike counts of one writer for many albums in one write. The store remembers the
+   * cumulative counts it has applied per writer and album, and only adds the part it has not applied yet. Writing the
+   * same counts again therefore changes nothing, so counts recovered from a journal can be written without knowing
+   * whether they were stored before, and any number of writers can add to the same albums.
+   *
+   * @param writerId The unique ID of the writer, made of letters and digits only.
+   * @param counts   The likes and dislikes the writer has recorded since it was created, keyed by album ID.
+   * @return The number of write operations issued.
+   * @throws PartialWriteException If the counts of some albums were written and the others were not.
+   * @throws RuntimeException      If the counts cannot be written.
+   */
+  int bulkApplyReviews(String writerId, Map<String, ReviewCounts> counts);
+}
@@ -0,0 +1,114 @@
+package review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the full, drain and multi-producer behaviour of {@link MpscRingBuffer}.
+ * @author ambikakabra
+ */
+class MpscRingBufferTest {
+
+  @Test
+  void capacityIsRoundedUpToPowerOfTwo() {
+    assertEquals(2, new MpscRingBuffer<Integer>(1).capacity());
+    assertEquals(2, new MpscRingBuffer<Integer>(2).capacity());
+    assertEquals(4, new MpscRingBuffer<Integer>(3).capacity());
+    assertEquals(8, new MpscRingBuffer<Integer>(8).capacity());
+    assertEquals(16, new MpscRingBuffer<Integer>(9).capacity());
+  }
+
+  @Test
+  void rejectsInvalidCapacities() {
+    assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(0));
+    assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(-1));
+    assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(MpscRingBuffer.MAX_CAPACITY + 1));
+  }
+
+  @Test
+  void rejectsOffersWhenFullUntilDrained() {
+    MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+    assertTrue(buffer.isEmpty());
+    for (int i = 0; i < 8; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(8));
+
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(3, buffer.drain(drained::add, 3));
+    assertEquals(List.of(0, 1, 2), drained);
+    for (int i = 8; i < 11; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(11));
+
+    drained.clear();
+    assertEquals(8, buffer.drain(drained::add, Integer.MAX_VALUE));
+    assertEquals(List.of(3, 4, 5, 6, 7, 8, 9, 10), drained);
+    assertTrue(buffer.isEmpty());
+    assertEquals(0, buffer.drain(drained::add, Integer.MAX_VALUE));
+  }
+
+  @Test
+  void deliversEveryElementOnceInProducerOrder() throws Exception {
+    int producers = 4;
+    int perProducer = 20_000;
+    MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        long producer = p;
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (long i = 0; i < perProducer; i++) {
+            long[] element = {producer, i};
+            while (!buffer.offer(element)) {
+              Thread.yield();
+            }
+          }
+          return null;
+        }));
+      }
+
+      long[] next = new long[producers];
+      long received = 0;
+      start.countDown();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (received < (long) producers * perProducer) {
+        assertTrue(System.nanoTime() < deadline, "Timed out after " + received + " elements");
+        int drained = buffer.drain(element -> {
+          int producer = (int) element[0];
+          assertEquals(next[producer], element[1], "Out of order from producer " + producer);
+          next[producer]++;
+        }, 32);
+        if (drained == 0) {
+          Thread.yield();
+        }
+        received += drained;
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+
+      for (int p = 0; p < producers; p++) {
+        assertEquals(perProducer, next[p]);
+      }
+      assertTrue(buffer.isEmpty());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
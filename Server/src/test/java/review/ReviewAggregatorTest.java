@@ -0,0 +1,97 @@
+package review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import model.ReviewCounts;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import store.ReviewStore;
+
+/**
+ * Tests that a {@link ReviewAggregator} writes every recorded review exactly once while flushes race with deliveries.
+ * @author ambikakabra
+ */
+class ReviewAggregatorTest {
+
+  /** A review store that sums the deltas written to it. */
+  private static final class SummingStore implements ReviewStore {
+    private final Map<String, long[]> totals = new ConcurrentHashMap<>();
+
+    @Override
+    public ReviewCounts getReviewCounts(String albumId) {
+      long[] counts = totals.getOrDefault(albumId, new long[2]);
+      return new ReviewCounts(counts[0], counts[1]);
+    }
+
+    @Override
+    public int bulkUpdateReviews(Map<String, ReviewCounts> deltas) {
+      deltas.forEach((albumId, delta) -> {
+        long[] counts = totals.computeIfAbsent(albumId, id -> new long[2]);
+        counts[0] += delta.getLikes();
+        counts[1] += delta.getDislikes();
+      });
+      return 1;
+    }
+
+    @Override
+    public int bulkApplyReviews(String writerId, Map<String, ReviewCounts> counts) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  void writesEveryReviewOnceWhileFlushing() throws Exception {
+    int producers = 4;
+    int perProducer = 20_000;
+    ObjectId[] albums = {new ObjectId(), new ObjectId(), new ObjectId()};
+    SummingStore store = new SummingStore();
+    ReviewAggregator aggregator = new ReviewAggregator(store, new ReviewCountView(100, 0), 500, 1);
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        futures.add(executor.submit(() -> {
+          AlbumKey probe = AlbumKey.probe();
+          start.await();
+          for (int i = 0; i < perProducer; i++) {
+            probe.load(albums[i % albums.length].toByteArray(), 0);
+            aggregator.record(probe, i % 4 != 0);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      while (!futures.stream().allMatch(Future::isDone)) {
+        aggregator.flush();
+        Thread.yield();
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+      aggregator.close();
+    }
+
+    long likes = 0;
+    long dislikes = 0;
+    for (ObjectId album : albums) {
+      ReviewCounts counts = store.getReviewCounts(album.toHexString());
+      likes += counts.getLikes();
+      dislikes += counts.getDislikes();
+    }
+    assertEquals((long) producers * perProducer * 3 / 4, likes);
+    assertEquals((long) producers * perProducer / 4, dislikes);
+    assertEquals(producers * perProducer, aggregator.getRecordedEvents());
+  }
+}
@@ -0,0 +1,128 @@
+package review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the binary and legacy review message formats of {@link ReviewCodec}.
+ * @author ambikakabra
+ */
+class ReviewCodecTest {
+
+  /** Collects decoded events as "albumId:like" strings. */
+  private static final class Events implements ReviewCodec.EventHandler {
+    private final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onEvent(AlbumKey albumKey, boolean like) {
+      events.add(albumKey.toHexString() + ":" + like);
+    }
+  }
+
+  @Test
+  void singleReviewRoundTrips() {
+    ObjectId albumId = new ObjectId();
+    byte[] body = ReviewCodec.encode(albumId, false);
+
+    assertEquals(ReviewCodec.encodedLength(1), body.length);
+    assertTrue(ReviewCodec.isBinary(body));
+    Events events = new Events();
+    assertEquals(1, ReviewCodec.decode(body, AlbumKey.probe(), events));
+    assertEquals(List.of(albumId.toHexString() + ":false"), events.events);
+  }
+
+  @Test
+  void batchRoundTripsInOrder() {
+    List<String> expected = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.allocate(ReviewCodec.encodedLength(100));
+    ReviewCodec.writeHeader(buffer, 100);
+    for (int i = 0; i < 100; i++) {
+      ObjectId albumId = new ObjectId();
+      boolean like = i % 3 != 0;
+      ReviewCodec.writeEvent(buffer, albumId, like);
+      expected.add(albumId.toHexString() + ":" + like);
+    }
+
+    Events events = new Events();
+    assertEquals(100, ReviewCodec.decode(buffer.array(), AlbumKey.probe(), events));
+    assertEquals(expected, events.events);
+  }
+
+  @Test
+  void legacyMessagesAreNotBinary() {
+    ObjectId albumId = new ObjectId();
+    byte[] body = (albumId.toHexString() + ",1").getBytes(StandardCharsets.UTF_8);
+
+    assertFalse(ReviewCodec.isBinary(body));
+    Events events = new Events();
+    ReviewCodec.decodeLegacy(body, events);
+    assertEquals(List.of(albumId.toHexString() + ":true"), events.events);
+  }
+
+  @Test
+  void rejectsTextAsBinary() {
+    byte[] body = (new ObjectId().toHexString() + ",1").getBytes(StandardCharsets.UTF_8);
+
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decode(body, AlbumKey.probe(), new Events()));
+  }
+
+  @Test
+  void rejectsLengthThatDoesNotMatchCount() {
+    byte[] body = ReviewCodec.encode(new ObjectId(), true);
+    byte[] truncated = Arrays.copyOf(body, body.length - 1);
+    byte[] padded = Arrays.copyOf(body, body.length + 1);
+
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decode(truncated, AlbumKey.probe(), new Events()));
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decode(padded, AlbumKey.probe(), new Events()));
+  }
+
+  @Test
+  void rejectsZeroCount() {
+    byte[] body = {ReviewCodec.MAGIC, ReviewCodec.VERSION, 0, 0};
+
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decode(body, AlbumKey.probe(), new Events()));
+  }
+
+  @Test
+  void rejectsUnknownOpWithoutHandlingAnyEvent() {
+    ByteBuffer buffer = ByteBuffer.allocate(ReviewCodec.encodedLength(2));
+    ReviewCodec.writeHeader(buffer, 2);
+    ReviewCodec.writeEvent(buffer, new ObjectId(), true);
+    ReviewCodec.writeEvent(buffer, new ObjectId(), true);
+    byte[] body = buffer.array();
+    body[body.length - 1] = 3;
+
+    Events events = new Events();
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decode(body, AlbumKey.probe(), events));
+    assertTrue(events.events.isEmpty());
+  }
+
+  @Test
+  void rejectsInvalidHeaderCounts() {
+    ByteBuffer buffer = ByteBuffer.allocate(ReviewCodec.HEADER_LENGTH);
+
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.writeHeader(buffer, 0));
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.writeHeader(buffer, ReviewCodec.MAX_EVENTS + 1));
+  }
+
+  @Test
+  void rejectsMalformedLegacyMessages() {
+    byte[] noValue = new ObjectId().toHexString().getBytes(StandardCharsets.UTF_8);
+    byte[] badValue = (new ObjectId().toHexString() + ",x").getBytes(StandardCharsets.UTF_8);
+    byte[] badId = "not-an-id,1".getBytes(StandardCharsets.UTF_8);
+
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decodeLegacy(noValue, new Events()));
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decodeLegacy(badValue, new Events()));
+    assertThrows(IllegalArgumentException.class, () -> ReviewCodec.decodeLegacy(badId, new Events()));
+  }
+}
@@ -0,0 +1,188 @@
+package review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import model.ReviewCounts;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that a {@link ReviewJournal} recovers the same counts from its snapshot and journal file, including after a
+ * crash that left a torn record at the end of the journal.
+ * @author ambikakabra
+ */
+class ReviewJournalTest {
+  private static final String[] ALBUMS = {
+      new ObjectId().toHexString(), new ObjectId().toHexString(), new ObjectId().toHexString()};
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void snapshotThenReplayGivesSameTotals() throws IOException {
+    Path journalDirectory = directory.resolve("journal");
+    Map<String, String> expected;
+    String writerId;
+    try (ReviewJournal journal = new ReviewJournal(journalDirectory, 2)) {
+      writerId = journal.getWriterId();
+      expected = commitBatches(journal, 5);
+      // Commits 2 and 4 wrote snapshots, so the copy recovers from a snapshot and the fifth record.
+      Path crashed = copyOf(journalDirectory);
+      try (ReviewJournal recovered = new ReviewJournal(crashed, 2)) {
+        assertEquals(expected, totals(recovered.getUnstoredCounts()));
+        assertEquals(5, recovered.getSequence());
+        assertEquals(writerId, recovered.getWriterId());
+      }
+    }
+    try (ReviewJournal reopened = new ReviewJournal(journalDirectory, 2)) {
+      assertEquals(expected, totals(reopened.getUnstoredCounts()));
+      assertEquals(5, reopened.getSequence());
+      assertEquals(writerId, reopened.getWriterId());
+    }
+  }
+
+  @Test
+  void discardsTornRecordAtTheEnd() throws IOException {
+    Path journalDirectory = directory.resolve("journal");
+    Map<String, String> expected;
+    Path crashed;
+    try (ReviewJournal journal = new ReviewJournal(journalDirectory, 1000)) {
+      expected = commitBatches(journal, 3);
+      crashed = copyOf(journalDirectory);
+    }
+    Path journalFile = crashed.resolve("journal.log");
+    long intact = Files.size(journalFile);
+    // The header and the first bytes of a record whose append was cut off.
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.allocate(16).putInt(60).putInt(12345).putLong(4).flip());
+    }
+
+    try (ReviewJournal recovered = new ReviewJournal(crashed, 1000)) {
+      assertEquals(expected, totals(recovered.getUnstoredCounts()));
+      assertEquals(3, recovered.getSequence());
+      assertEquals(intact, Files.size(journalFile));
+      recovered.commit(Map.of(ALBUMS[0], new ReviewCounts(1, 0)));
+      expected.merge(ALBUMS[0], "", (old, ignored) -> increment(old));
+    }
+    try (ReviewJournal reopened = new ReviewJournal(crashed, 1000)) {
+      assertEquals(expected, totals(reopened.getUnstoredCounts()));
+      assertEquals(4, reopened.getSequence());
+    }
+  }
+
+  @Test
+  void discardsRecordThatFailsItsChecksum() throws IOException {
+    Path journalDirectory = directory.resolve("journal");
+    Map<String, String> afterTwo;
+    Path crashed;
+    try (ReviewJournal journal = new ReviewJournal(journalDirectory, 1000)) {
+      afterTwo = commitBatches(journal, 2);
+      journal.commit(Map.of(ALBUMS[1], new ReviewCounts(100, 100)));
+      crashed = copyOf(journalDirectory);
+    }
+    Path journalFile = crashed.resolve("journal.log");
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), Files.size(journalFile) - 1);
+    }
+
+    try (ReviewJournal recovered = new ReviewJournal(crashed, 1000)) {
+      assertEquals(afterTwo, totals(recovered.getUnstoredCounts()));
+      assertEquals(2, recovered.getSequence());
+    }
+  }
+
+  @Test
+  void storedCountsAreReportedOnceAndSurviveReopen() throws IOException {
+    Path journalDirectory = directory.resolve("journal");
+    try (ReviewJournal journal = new ReviewJournal(journalDirectory, 1000)) {
+      journal.commit(Map.of(ALBUMS[0], new ReviewCounts(3, 1), ALBUMS[1], new ReviewCounts(2, 2)));
+      Map<String, ReviewCounts> unstored = journal.getUnstoredCounts();
+
+      assertEquals(Map.of(ALBUMS[0], "3/1", ALBUMS[1], "2/2"), totals(journal.markStored(unstored)));
+      assertTrue(journal.markStored(unstored).isEmpty());
+      assertTrue(journal.getUnstoredCounts().isEmpty());
+
+      journal.commit(Map.of(ALBUMS[0], new ReviewCounts(1, 0)));
+      assertEquals(Map.of(ALBUMS[0], "4/1"), totals(journal.getUnstoredCounts()));
+    }
+    try (ReviewJournal reopened = new ReviewJournal(journalDirectory, 1000)) {
+      Map<String, ReviewCounts> unstored = reopened.getUnstoredCounts();
+      assertEquals(Map.of(ALBUMS[0], "4/1"), totals(unstored));
+      assertEquals(Map.of(ALBUMS[0], "1/0"), totals(reopened.markStored(unstored)));
+    }
+  }
+
+  @Test
+  void refusesSecondJournalOnTheSameDirectory() throws IOException {
+    Path journalDirectory = directory.resolve("journal");
+    try (ReviewJournal journal = new ReviewJournal(journalDirectory, 1000)) {
+      assertThrows(IOException.class, () -> new ReviewJournal(journalDirectory, 1000));
+    }
+    new ReviewJournal(journalDirectory, 1000).close();
+  }
+
+  /**
+   * Commits batches that review every album a different number of times.
+   *
+   * @return The expected cumulative counts, as "likes/dislikes" keyed by album ID.
+   */
+  private static Map<String, String> commitBatches(ReviewJournal journal, int batches) throws IOException {
+    long[][] totals = new long[ALBUMS.length][2];
+    for (int batch = 1; batch <= batches; batch++) {
+      Map<String, ReviewCounts> deltas = new HashMap<>();
+      for (int album = 0; album < ALBUMS.length; album++) {
+        if ((batch + album) % 3 == 0) {
+          continue;
+        }
+        deltas.put(ALBUMS[album], new ReviewCounts(batch * (album + 1), batch));
+        totals[album][0] += batch * (album + 1);
+        totals[album][1] += batch;
+      }
+      journal.commit(deltas);
+    }
+    Map<String, String> expected = new TreeMap<>();
+    for (int album = 0; album < ALBUMS.length; album++) {
+      expected.put(ALBUMS[album], totals[album][0] + "/" + totals[album][1]);
+    }
+    return expected;
+  }
+
+  /**
+   * Copies the files of an open journal, as a crash would leave them, without its lock.
+   */
+  private Path copyOf(Path journalDirectory) throws IOException {
+    Path copy = Files.createDirectories(directory.resolve("crashed"));
+    for (String name : new String[] {"writer.id", "snapshot.dat", "journal.log"}) {
+      Path file = journalDirectory.resolve(name);
+      if (Files.exists(file)) {
+        Files.copy(file, copy.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    return copy;
+  }
+
+  private static Map<String, String> totals(Map<String, ReviewCounts> counts) {
+    Map<String, String> totals = new TreeMap<>();
+    counts.forEach((albumId, reviewCounts) ->
+        totals.put(albumId, reviewCounts.getLikes() + "/" + reviewCounts.getDislikes()));
+    return totals;
+  }
+
+  private static String increment(String total) {
+    String[] parts = total.split("/");
+    return (Long.parseLong(parts[0]) + 1) + "/" + parts[1];
+  }
+}
@@ -0,0 +1,125 @@
+package store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests appending, replaying and recovering the tail of a {@link MappedLog}.
+ * @author ambikakabra
+ */
+class MappedLogTest {
+  private static final int SEGMENT_SIZE = 256;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replaysRecordsAcrossSegments() throws IOException {
+    List<Long> offsets = new ArrayList<>();
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      for (int i = 0; i < 20; i++) {
+        offsets.add(log.append((byte) (i % 5 + 1), payload("record-" + i + "-" + "x".repeat(30))));
+      }
+      assertEquals("record-7-" + "x".repeat(30), text(log.payloadAt(offsets.get(7))));
+      assertEquals(3, log.typeAt(offsets.get(7)));
+    }
+
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      List<String> records = replay(log);
+      assertEquals(20, records.size());
+      for (int i = 0; i < 20; i++) {
+        assertEquals((i % 5 + 1) + ":record-" + i + "-" + "x".repeat(30), records.get(i));
+      }
+      long offset = log.append((byte) 1, payload("after"));
+      assertEquals(offset, log.size() - MappedLog.HEADER_LENGTH - "after".length());
+    }
+  }
+
+  @Test
+  void discardsRecordThatFailsItsChecksum() throws IOException {
+    long torn;
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      log.append((byte) 1, payload("first"));
+      log.append((byte) 1, payload("second"));
+      torn = log.append((byte) 1, payload("third"));
+    }
+    overwrite(torn + MappedLog.HEADER_LENGTH, new byte[] {'T'});
+
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      assertEquals(List.of("1:first", "1:second"), replay(log));
+      assertEquals(torn, log.size());
+      assertEquals(torn, log.append((byte) 2, payload("replacement")));
+    }
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      assertEquals(List.of("1:first", "1:second", "2:replacement"), replay(log));
+    }
+  }
+
+  @Test
+  void discardsTruncatedRecord() throws IOException {
+    long end;
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      log.append((byte) 1, payload("first"));
+      end = log.size();
+    }
+    // A record whose length was written but whose checksum, type and payload were not.
+    overwrite(end, ByteBuffer.allocate(4).putInt(40).array());
+
+    try (MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false)) {
+      assertEquals(List.of("1:first"), replay(log));
+      assertEquals(end, log.size());
+    }
+    ByteBuffer zeroed = ByteBuffer.allocate(4);
+    try (FileChannel channel = FileChannel.open(directory.resolve("00000000.log"), StandardOpenOption.READ)) {
+      channel.read(zeroed, end);
+    }
+    assertEquals(0, zeroed.getInt(0));
+  }
+
+  @Test
+  void refusesSecondWriterUntilClosed() throws IOException {
+    MappedLog log = new MappedLog(directory, SEGMENT_SIZE, false);
+    assertThrows(IOException.class, () -> new MappedLog(directory, SEGMENT_SIZE, false));
+    log.close();
+    new MappedLog(directory, SEGMENT_SIZE, false).close();
+  }
+
+  @Test
+  void refusesSegmentsOfAnotherSize() throws IOException {
+    new MappedLog(directory, SEGMENT_SIZE, false).close();
+    assertThrows(IOException.class, () -> new MappedLog(directory, SEGMENT_SIZE * 2, false));
+  }
+
+  private void overwrite(long position, byte[] bytes) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory.resolve("00000000.log"), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(bytes), position);
+    }
+  }
+
+  private static List<String> replay(MappedLog log) {
+    List<String> records = new ArrayList<>();
+    log.replay((offset, type, payload) -> records.add(type + ":" + text(payload)));
+    return records;
+  }
+
+  private static ByteBuffer payload(String text) {
+    return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String text(ByteBuffer payload) {
+    byte[] bytes = new byte[payload.remaining()];
+    payload.duplicate().get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
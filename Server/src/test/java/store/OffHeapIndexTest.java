@@ -0,0 +1,93 @@
+package store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that an {@link OffHeapIndex} keeps its entries across resizes and deletes.
+ * @author ambikakabra
+ */
+class OffHeapIndexTest {
+
+  @Test
+  void keepsEntriesAcrossResizesWithDeletes() {
+    OffHeapIndex index = new OffHeapIndex(16);
+    long initialBytes = index.memoryBytes();
+    Map<ObjectId, long[]> expected = new HashMap<>();
+    List<ObjectId> ids = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      ObjectId id = new ObjectId();
+      ids.add(id);
+      index.put(id, i, -i);
+      expected.put(id, new long[] {i, -i});
+      if (i % 3 == 2) {
+        ObjectId removed = ids.get(i / 2);
+        assertEquals(expected.remove(removed) != null, index.remove(removed));
+      }
+    }
+    for (int i = 0; i < ids.size(); i += 7) {
+      index.add(ids.get(i), 10, 20);
+      long[] values = expected.computeIfAbsent(ids.get(i), id -> new long[2]);
+      values[0] += 10;
+      values[1] += 20;
+    }
+
+    assertTrue(index.memoryBytes() > initialBytes);
+    assertEquals(expected.size(), index.size());
+    long[] values = new long[2];
+    for (ObjectId id : ids) {
+      long[] expectedValues = expected.get(id);
+      if (expectedValues == null) {
+        assertFalse(index.get(id, values), id.toHexString());
+        assertFalse(index.contains(id));
+      } else {
+        assertTrue(index.get(id, values), id.toHexString());
+        assertArrayEquals(expectedValues, values);
+      }
+    }
+  }
+
+  @Test
+  void reusesDeletedSlotsWithoutGrowing() {
+    OffHeapIndex index = new OffHeapIndex(64);
+    long initialBytes = index.memoryBytes();
+    List<ObjectId> live = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      ObjectId id = new ObjectId();
+      index.put(id, i, i);
+      live.add(id);
+      if (live.size() > 8) {
+        assertTrue(index.remove(live.remove(random.nextInt(live.size()))));
+      }
+    }
+
+    assertEquals(initialBytes, index.memoryBytes());
+    assertEquals(live.size(), index.size());
+    for (ObjectId id : live) {
+      assertTrue(index.contains(id));
+    }
+  }
+
+  @Test
+  void removeOfMissingKeyReportsFalse() {
+    OffHeapIndex index = new OffHeapIndex(16);
+    ObjectId id = new ObjectId();
+    index.put(id, 1, 2);
+
+    assertFalse(index.remove(new ObjectId()));
+    assertTrue(index.remove(id));
+    assertFalse(index.remove(id));
+    assertEquals(0, index.size());
+  }
+}